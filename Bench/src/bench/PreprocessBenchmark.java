@@ -0,0 +1,194 @@
+package bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Benchmarks the Preprocess solvers over the bundled testsets and
+* seeded random instances of increasing size
+* JMH cannot generate code for benchmarks in the default package, so
+* the Pre classes are reached through method handles looked up once
+*/
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreprocessBenchmark {
+    private static final Class<?> COORDINATE = load("Coordinate");
+    private static final Class<?> PREPROCESS = load("Preprocess");
+    private static final Class<?> MATRIX = load("DistanceMatrix");
+    private static final Class<?> WRITER = load("AssemblyWriter");
+    private static final Class<?> LOADER = load("CoordinateLoader");
+    private static final Class<?> CONSTRUCTOR = load("TourConstructor");
+    private static final Class<?> GRAPH_VIEW = load("GraphView");
+
+    private static final MethodHandle NEAREST_NEIGHBOR = handle(PREPROCESS, "nearestNeighbor", MATRIX);
+    private static final MethodHandle MAGIC = handle(PREPROCESS, "magic", MATRIX);
+    private static final MethodHandle CONSTRUCT = handle(PREPROCESS, "construct", CONSTRUCTOR, MATRIX);
+    private static final MethodHandle NAMED = handle(CONSTRUCTOR, "named", String.class);
+    private static final MethodHandle CREATE_GRAPH = handle(GRAPH_VIEW, "createGraph", COORDINATE, COORDINATE.arrayType());
+    private static final MethodHandle PATH_LENGTH = handle(PREPROCESS, "getPathLength", MATRIX, int[].class);
+    private static final MethodHandle POPULATE = handle(WRITER, "populate");
+    private static final MethodHandle LOAD = handle(LOADER, "load", File.class);
+
+    /** testset names are read from ../Pre, random-N are seeded uniform fields of N destinations */
+    @Param({"testset1", "testset2", "testset3", "testmanual", "random-12", "random-100", "random-1000"})
+    public String instance;
+
+    private Object preprocess;
+    private Object coords;
+    private Object origin;
+    private MethodHandle newMatrix;
+    private Object matrix;
+    private int[] tour;
+    private Object nearest, farthest, cheapest, hull;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        Field verbose = PREPROCESS.getDeclaredField("verbose");
+        verbose.setAccessible(true);
+        verbose.setBoolean(null, false);
+
+        if (instance.startsWith("random-")) {
+            int n = Integer.parseInt(instance.substring("random-".length()));
+            Constructor<?> make = COORDINATE.getDeclaredConstructor(int.class, int.class);
+            make.setAccessible(true);
+            Method setNumber = COORDINATE.getMethod("setNumber", int.class);
+            Random random = new Random(2031 + n);
+            coords = Array.newInstance(COORDINATE, n);
+            for (int i = 0; i < n; i++) {
+                Object c = make.newInstance(random.nextInt(4000) - 2000, random.nextInt(4000) - 2000);
+                setNumber.invoke(c, i + 1);
+                Array.set(coords, i, c);
+            }
+        } else {
+            coords = LOAD.invoke(new File("../Pre/" + instance + ".json"));
+        }
+        Field inCoords = PREPROCESS.getDeclaredField("inCoords");
+        inCoords.setAccessible(true);
+        inCoords.set(null, coords);
+
+        Constructor<?> makePreprocess = PREPROCESS.getDeclaredConstructor();
+        makePreprocess.setAccessible(true);
+        preprocess = makePreprocess.newInstance();
+        Field originField = PREPROCESS.getDeclaredField("origin");
+        originField.setAccessible(true);
+        origin = originField.get(preprocess);
+        Constructor<?> makeMatrix = MATRIX.getConstructor(COORDINATE, coords.getClass());
+        newMatrix = MethodHandles.lookup().unreflectConstructor(makeMatrix);
+        newMatrix = newMatrix.asType(newMatrix.type().generic());
+        matrix = newMatrix.invoke(origin, coords);
+        tour = (int[]) NEAREST_NEIGHBOR.invoke(preprocess, matrix);
+        nearest = NAMED.invoke("nearest");
+        farthest = NAMED.invoke("farthest");
+        cheapest = NAMED.invoke("cheapest");
+        hull = NAMED.invoke("hull");
+
+        //populate logs every destination; keep the formatting but drop the output
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public Object createGraph() throws Throwable {
+        return CREATE_GRAPH.invoke(origin, coords);
+    }
+
+    @Benchmark
+    public Object distanceMatrix() throws Throwable {
+        return newMatrix.invoke(origin, coords);
+    }
+
+    @Benchmark
+    public Object nearestNeighbor() throws Throwable {
+        return NEAREST_NEIGHBOR.invoke(preprocess, matrix);
+    }
+
+    @Benchmark
+    public Object magic() throws Throwable {
+        return MAGIC.invoke(preprocess, matrix);
+    }
+
+    @Benchmark
+    public Object nearestInsertion() throws Throwable {
+        return CONSTRUCT.invoke(preprocess, nearest, matrix);
+    }
+
+    @Benchmark
+    public Object farthestInsertion() throws Throwable {
+        return CONSTRUCT.invoke(preprocess, farthest, matrix);
+    }
+
+    @Benchmark
+    public Object cheapestInsertion() throws Throwable {
+        return CONSTRUCT.invoke(preprocess, cheapest, matrix);
+    }
+
+    @Benchmark
+    public Object hullInsertion() throws Throwable {
+        return CONSTRUCT.invoke(preprocess, hull, matrix);
+    }
+
+    @Benchmark
+    public double getPathLength() throws Throwable {
+        return (double) PATH_LENGTH.invoke(matrix, tour);
+    }
+
+    /**
+     * Always reads ../Pre/coords.json, independent of the instance parameter
+     */
+    @Benchmark
+    public Object populate() throws Throwable {
+        return POPULATE.invoke();
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Pre classes missing from the classpath", e);
+        }
+    }
+
+    private static MethodHandle handle(Class<?> owner, String name, Class<?>... params) {
+        try {
+            Method method = owner.getDeclaredMethod(name, params);
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(handle.type().generic());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Pre method " + name + " not found", e);
+        }
+    }
+}
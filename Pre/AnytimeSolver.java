@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Plans within a fixed time budget and always has a tour to hand back
+* The first constructor (nearest neighbor by default) runs first so there
+* is a valid tour almost at once, then the other constructors, local
+* search, Held-Karp (small inputs) and the portfolio
+* each get whatever time is left; every improvement goes to the listeners
+* Once the path length model's tour is within the target gap of the
+* 1-tree lower bound, the remaining stages are skipped
+*/
+public class AnytimeSolver {
+    private final DistanceMatrix matrix;
+    private final CostModel model;
+    private final List<TourListener> listeners = new ArrayList<>();
+    private LocalSearch search;
+    private OneTreeBound lower;
+    private double targetGap;
+    private long start;
+    private long deadline;
+    private PortfolioSolver.Result best;
+    private List<TourConstructor> constructors = TourConstructor.constructArg(new String[0]);
+
+    public AnytimeSolver(DistanceMatrix matrix, CostModel model) {
+        this.matrix = matrix;
+        this.model = model;
+    }
+
+    public void addListener(TourListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gap to the lower bound (a fraction, 0 by default) that counts as good enough
+     */
+    public void setTargetGap(double targetGap) {
+        this.targetGap = targetGap;
+    }
+
+    /**
+     * Constructors to start from, the first of them is always run
+     */
+    public void setConstructors(List<TourConstructor> constructors) {
+        this.constructors = constructors;
+    }
+
+    /**
+     * The bound computed during the last solve, or null if time ran out first
+     */
+    public OneTreeBound getLowerBound() {
+        return lower;
+    }
+
+    /**
+     * Solves for at most millis milliseconds (plus the first constructor's
+     * tour, which is always built) and returns the best tour found
+     */
+    public PortfolioSolver.Result solve(long millis) {
+        Preprocess.log("---Anytime Begin---");
+        start = System.nanoTime();
+        deadline = start + millis * 1000000L;
+        best = null;
+        search = null;
+        lower = null;
+        Preprocess construct = new Preprocess();
+
+        List<int[]> starts = new ArrayList<>();
+        for (TourConstructor constructor : constructors) {
+            if (!starts.isEmpty() && expired())
+                break;
+            starts.add(construct.construct(constructor, matrix));
+            publish(starts.get(starts.size() - 1), constructor.name());
+        }
+        if (!expired())
+            polish(best.tour, best.strategy);
+        if (!expired()) {
+            lower = new OneTreeBound(matrix);
+            double length = matrix.pathLength(best.tour);
+            lower.solve(length, targetGap, deadline);
+            if (model == matrix && lower.proves(length, targetGap)) {
+                Preprocess.log("Within the target gap of the lower bound " + lower.getBound());
+                Preprocess.log("---Anytime End---\n");
+                return best;
+            }
+        }
+        if (!expired() && matrix.size() - 1 <= HeldKarp.MAX_DESTINATIONS) {
+            int[] exactTour = new HeldKarp(matrix).solve(deadline);
+            if (exactTour != null) {
+                publish(exactTour, "Held-Karp");
+                if (model != matrix && !expired())
+                    polish(exactTour, "Held-Karp");
+            }
+        }
+
+        long left = (deadline - System.nanoTime()) / 1000000L;
+        if (left > 0) {
+            PortfolioSolver portfolio = search == null ? new PortfolioSolver(matrix, model) : new PortfolioSolver(matrix, model, search);
+            portfolio.addStart(best.strategy, best.tour);
+            for (int i = 0; i < starts.size(); i++)
+                portfolio.addStart(constructors.get(i).name(), starts.get(i));
+            portfolio.setListener((tour, cost, elapsed, strategy) -> publish(tour, "Portfolio (" + strategy + ")"));
+            portfolio.solve(left);
+        }
+        Preprocess.log("Best - " + best.cost + " " + model.unit() + " from " + best.strategy
+            + " after " + (System.nanoTime() - start) / 1000000L + " ms");
+        Preprocess.log("---Anytime End---\n");
+        return best;
+    }
+
+    private boolean expired() {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Local search on a tour, cut short at the deadline
+     * The candidate lists are built once and shared with the portfolio
+     */
+    private void polish(int[] tour, String strategy) {
+        if (search == null) {
+            search = new LocalSearch(matrix, model);
+            search.setDeadline(deadline);
+        }
+        publish(search.improve(tour), strategy + " + Local Search");
+    }
+
+    /**
+     * Keeps the tour and tells the listeners if it beats the best so far
+     */
+    private synchronized void publish(int[] tour, String strategy) {
+        double cost = model.tourCost(tour);
+        if (best != null && best.cost <= cost)
+            return;
+        best = new PortfolioSolver.Result(tour, cost, strategy);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        for (TourListener listener : listeners)
+            listener.improved(tour, cost, elapsed, strategy);
+    }
+}
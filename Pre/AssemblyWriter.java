@@ -1,6 +1,5 @@
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.lang.Integer;
@@ -8,20 +7,28 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import org.json.simple.parser.ParseException;
-
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
 
 
 public class AssemblyWriter {
 
+    private final static String TABLE_BEGIN = ";COORDINATE_TABLE_BEGIN";
+    private final static String TABLE_END = ";COORDINATE_TABLE_END";
     private final static File ASMFILE = new File(new File("").getAbsoluteFile().getParent() + "/ASM/move_to_points.ASM");
+    /** The program whose table also carries each leg's heading and length */
+    private final static File PRECOMPUTED_ASMFILE = new File(new File("").getAbsoluteFile().getParent() + "/ASM/move_to_points_precomputed.ASM");
 
-    private static Coordinate[] inCoords = new Coordinate[12];
-    private static Coordinate[] outCoords  = new Coordinate[12];
+    private static Coordinate[] inCoords = new Coordinate[0];
+    private static Coordinate[] outCoords  = new Coordinate[0];
 
     /**
      * Initializes global variables
@@ -38,19 +45,14 @@ public class AssemblyWriter {
     }
 
     /**
-     * Reads JSON file and populate Coordinate arrays
+     * Reads coords.json (or CSV / binary data copied there) and populate Coordinate arrays
      */
-    public static Coordinate[] populate() throws FileNotFoundException, IOException, ParseException {
+    public static Coordinate[] populate() throws FileNotFoundException, IOException {
         System.out.println("---populate Begin---");
-        JSONParser parser = new JSONParser();
-		JSONObject jsonObject = (JSONObject) parser.parse(new FileReader(new File("").getAbsoluteFile().getParent() + "/Pre/coords.json"));
-        for (int i = 0; i < inCoords.length; i++) {
-            JSONArray r = (JSONArray) jsonObject.get(Integer.toString(i + 1));
-            inCoords[i].x = toRobotUnits(((Number) r.get(0)).doubleValue());
-            inCoords[i].y = toRobotUnits(((Number) r.get(1)).doubleValue());
-            inCoords[i].setNumber(i + 1);
-            System.out.printf("%d. Num: %d x: %d y: %d\n", i, inCoords[i].getNumber(), inCoords[i].getX(),  inCoords[i].getY());
-        }
+        inCoords = CoordinateLoader.load(new File(new File("").getAbsoluteFile().getParent() + "/Pre/coords.json"));
+        if (Preprocess.verbose)
+            for (int i = 0; i < inCoords.length; i++)
+                System.out.printf("%d. Num: %d x: %d y: %d\n", i, inCoords[i].getNumber(), inCoords[i].getX(),  inCoords[i].getY());
         System.out.println("---populate End---\n");
         return inCoords;
     }
@@ -59,48 +61,202 @@ public class AssemblyWriter {
      * Writes the modified order of coordinates back to ASM file
      */
     public static void writeToASM(Coordinate[] toWrite) throws FileNotFoundException, IOException {
+        writeToASM(toWrite, ASMFILE);
+    }
+
+    /**
+     * Patches the COORDINATE_TABLE region of each target with the given order
+     * Each file is streamed into a temp file next to it and renamed over the
+     * original atomically, so a crash never leaves a half written program
+     * A target whose table already hashes the same is left untouched
+     */
+    public static void writeToASM(Coordinate[] toWrite, File... targets) throws FileNotFoundException, IOException {
+        writeTable(toWrite, false, targets);
+    }
+
+    /**
+     * Patches the extended table of move_to_points_precomputed.ASM (or of
+     * each target): every entry is x, y, the heading the robot has to face
+     * from the previous destination (degrees, as Atan2 returns them), the
+     * leg's L2Estimate length, then the destination number
+     * The robot starts at the origin facing 0
+     */
+    public static void writePrecomputedToASM(Coordinate[] toWrite, File... targets) throws FileNotFoundException, IOException {
+        writeTable(toWrite, true, targets.length == 0 ? new File[] {PRECOMPUTED_ASMFILE} : targets);
+    }
+
+    private static void writeTable(Coordinate[] toWrite, boolean precomputed, File... targets) throws FileNotFoundException, IOException {
         System.out.println("---writeToASM Begin---");
         outCoords = toWrite;
-        BufferedReader reader = new BufferedReader(new FileReader(ASMFILE));
-        String line;
-        ArrayList<String> out = new ArrayList<>();
+        int[] words = tableWords(outCoords, precomputed);
+        MifWriter.checkFits(words);
+        String[] names = precomputed ? new String[] {"x", "y", "heading", "length"} : new String[] {"x", "y"};
+        int stride = names.length + 1;
+        List<String> table = new ArrayList<>();
+        table.add(String.format("\tTABLE_LENGTH: DW %d", words[0]));
+        table.add("\tCOORDINATE_TABLE:");
+        for (int i = 1; i < words.length; i++) {
+            int field = (i - 1) % stride;
+            if (field < names.length)
+                table.add(String.format("\t\tDW %d ; %s", words[i], names[field]));
+            else
+                table.add(String.format("\t\tDW %d ; dest #%d", words[i], words[i]));
+        }
+        MessageDigest digest = sha256();
+        for (String line : table)
+            update(digest, line);
+        byte[] tableHash = digest.digest();
+
+        for (File target : targets) {
+            if (Arrays.equals(tableHash, currentTableHash(target))) {
+                System.out.println("Table unchanged, skipping " + target);
+                continue;
+            }
+            patch(target, table);
+            System.out.println("Patched " + target);
+        }
+        System.out.println("---writeToASM End---\n");
+    }
+
+    /**
+     * Writes one table per robot: to targets[r] if there is one target per
+     * robot, otherwise to a copy of the first target (or of the ASM file,
+     * the precomputed one if precomputed) named NAME-robotN.ASM next to it,
+     * so every robot runs the same program
+     */
+    public static void writeToASM(Coordinate[][] tables, boolean precomputed, File... targets) throws FileNotFoundException, IOException {
+        File template = targets.length > 0 ? targets[0] : precomputed ? PRECOMPUTED_ASMFILE : ASMFILE;
+        String name = template.getName().replaceFirst("\\.[^.]*$", "");
+        for (int r = 0; r < tables.length; r++) {
+            File target;
+            if (targets.length == tables.length) {
+                target = targets[r];
+            } else {
+                target = new File(template.getAbsoluteFile().getParentFile(), name + "-robot" + (r + 1) + ".ASM");
+                Files.copy(template.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            writeTable(tables[r], precomputed, target);
+        }
+    }
 
-        while ((line = reader.readLine()) != null && !(line.trim().equals(";COORDINATE_TABLE_BEGIN"))) {
-            out.add(line + "\n");
+    /**
+     * TABLE_LENGTH followed by the COORDINATE_TABLE words, 3 per destination
+     * (x, y, number) or 5 when precomputed (x, y, heading, length, number)
+     */
+    static int[] tableWords(Coordinate[] toWrite, boolean precomputed) {
+        int stride = precomputed ? 5 : 3;
+        int[] words = new int[1 + stride * toWrite.length];
+        words[0] = stride * toWrite.length;
+        int fromX = 0, fromY = 0, at = 1;
+        for (Coordinate c : toWrite) {
+            int x = c.getX(), y = c.getY();
+            words[at++] = x;
+            words[at++] = y;
+            if (precomputed) {
+                words[at++] = RunSimulator.atan2(x - fromX, y - fromY);
+                words[at++] = DistanceKernel.robot(x - fromX, y - fromY);
+                fromX = x;
+                fromY = y;
+            }
+            words[at++] = c.getNumber();
         }
-        if (line != null) {
-            out.add(line + "\n");
+        return words;
+    }
+
+    /**
+     * Hashes the lines between the table markers, reading no further than the end marker
+     */
+    private static byte[] currentTableHash(File target) throws IOException {
+        MessageDigest digest = sha256();
+        try (BufferedReader reader = new BufferedReader(new FileReader(target, StandardCharsets.ISO_8859_1))) {
+            String line;
+            while ((line = reader.readLine()) != null && !(line.trim().equals(TABLE_BEGIN)));
+            if (line == null)
+                throw new IOException(target + " has no " + TABLE_BEGIN + " marker");
+            while ((line = reader.readLine()) != null && !(line.trim().equals(TABLE_END)))
+                update(digest, line);
+            if (line == null)
+                throw new IOException(target + " has no " + TABLE_END + " marker");
         }
-        out.add("\tCOORDINATE_TABLE:\n");
-        for (int i = 0; i < outCoords.length; i++) {
-            out.add(String.format("\t\tDW %d ; x\n", outCoords[i].getX()));
-            out.add(String.format("\t\tDW %d ; y\n", outCoords[i].getY()));
-            out.add(String.format("\t\tDW %d ; dest #%d\n", outCoords[i].getNumber(), outCoords[i].getNumber()));
+        return digest.digest();
+    }
+
+    /**
+     * Copies target to a temp file with the table region replaced, syncs
+     * it to disk, then renames it over target
+     */
+    private static void patch(File target, List<String> table) throws IOException {
+        String newline = lineSeparator(target);
+        Path temp = Files.createTempFile(target.getAbsoluteFile().toPath().getParent(), target.getName(), ".tmp");
+        try {
+            try (BufferedReader reader = new BufferedReader(new FileReader(target, StandardCharsets.ISO_8859_1));
+                 FileOutputStream out = new FileOutputStream(temp.toFile());
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writer.write(line);
+                    writer.write(newline);
+                    if (line.trim().equals(TABLE_BEGIN))
+                        break;
+                }
+                for (String row : table) {
+                    writer.write(row);
+                    writer.write(newline);
+                }
+                //seek
+                while((line = reader.readLine()) != null && !(line.trim().equals(TABLE_END)));
+                while (line != null) {
+                    writer.write(line);
+                    writer.write(newline);
+                    line = reader.readLine();
+                }
+                //on disk before the rename, or a crash could leave an empty target
+                writer.flush();
+                out.getChannel().force(true);
+            }
+            try {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target.toPath()));
+            } catch (UnsupportedOperationException e) {
+                //not a POSIX file system, the default permissions will do
+            }
+            Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
         }
+    }
 
-        //seek
-        while((line = reader.readLine()) != null && !(line.trim().equals(";COORDINATE_TABLE_END")));
-        if ( line != null) {
-            out.add(line + "\n");
+    /**
+     * Keeps the file's own line endings (the ASM sources use CRLF)
+     */
+    private static String lineSeparator(File target) throws IOException {
+        try (FileReader reader = new FileReader(target, StandardCharsets.ISO_8859_1)) {
+            int prev = -1, c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n')
+                    return prev == '\r' ? "\r\n" : "\n";
+                prev = c;
+            }
         }
+        return "\n";
+    }
 
-        while ((line = reader.readLine()) != null) {
-            out.add(line + "\n");
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        reader.close();
+    }
 
-		BufferedWriter writer = new BufferedWriter(new FileWriter(ASMFILE));
-        for(String s : out)
-            writer.write(s);
-        writer.flush();
-        writer.close();
-        System.out.println("---writeToASM End---\n");
+    private static void update(MessageDigest digest, String line) {
+        digest.update(line.getBytes(StandardCharsets.ISO_8859_1));
+        digest.update((byte) '\n');
     }
 
     /**
      * Converts feet values to robot units
      */
-    public static int toRobotUnits(Double feetValue) {
+    public static int toRobotUnits(double feetValue) {
         return (int) ((feetValue * 12 * 25.4d) / (1.05d));
     }
 
@@ -0,0 +1,79 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* Solves many coordinate files in one JVM, in parallel, and prints
+* one tab separated result row per file as soon as it is done
+* Usage: BatchRunner <directory or glob> [Preprocess args...]
+* e.g. BatchRunner 'test*.json' time deadline=500
+*/
+public class BatchRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: BatchRunner <directory or glob> [time] [deadline=MS] [budget=N] [metrics=FILE]");
+            System.exit(1);
+        }
+        String[] solverArgs = Arrays.copyOfRange(args, 1, args.length);
+        List<File> files = findFiles(args[0]);
+        Preprocess.verbose = false;
+        File report = Preprocess.metricsReport(solverArgs);
+        Metrics.enabled = report != null;
+
+        System.out.println("file\tdestinations\tpath length\tcost\tstrategy\tsolve ms");
+        long start = System.nanoTime();
+        files.parallelStream().forEach(file -> System.out.println(solve(file, solverArgs)));
+        System.out.printf("%d files in %d ms\n", files.size(), (System.nanoTime() - start) / 1000000);
+        if (report != null)
+            Metrics.writeReport(report);
+    }
+
+    /**
+     * Solves one file and formats its row; failures become an error row
+     */
+    static String solve(File file, String[] args) {
+        try {
+            Coordinate[] coords = CoordinateLoader.load(file);
+            long start = System.nanoTime();
+            Preprocess p = new Preprocess();
+            DistanceMatrix matrix = new DistanceMatrix(p.origin, coords, DistanceKernel.metricArg(args));
+            File obstacles = ObstacleLegs.obstaclesArg(args);
+            if (obstacles != null)
+                ObstacleLegs.apply(ObstacleMap.load(obstacles), matrix, null);
+            int[] tour = p.plan(matrix, args);
+            long millis = (System.nanoTime() - start) / 1000000;
+            return String.format("%s\t%d\t%.1f\t%.2f %s\t%s\t%d", file.getName(), coords.length,
+                matrix.pathLength(tour), p.model.tourCost(tour), p.model.unit(), p.strategy, millis);
+        } catch (Exception e) {
+            return file.getName() + "\tERROR\t" + e;
+        }
+    }
+
+    /**
+     * Every .json file in a directory, or the files matching a glob
+     */
+    static List<File> findFiles(String pattern) throws IOException {
+        List<File> files = new ArrayList<>();
+        File dir = new File(pattern);
+        String glob = "*.json";
+        if (!dir.isDirectory()) {
+            Path path = Paths.get(pattern);
+            glob = path.getFileName().toString();
+            dir = path.getParent() == null ? new File(".") : path.getParent().toFile();
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(), glob)) {
+            for (Path path : stream)
+                files.add(path.toFile());
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
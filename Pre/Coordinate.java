@@ -1,10 +1,6 @@
-import org.jgrapht.*;
-import org.jgrapht.generate.*;
-import org.jgrapht.graph.*;
-import org.jgrapht.traverse.*;
-
-public class Coordinate extends DefaultEdge {
+public class Coordinate {
     int x, y, number;
+    double score = 1;
 
     Coordinate() {
         this.x = 0;
@@ -30,6 +26,13 @@ public class Coordinate extends DefaultEdge {
         return number;
     }
 
+    /**
+     * Value of reaching this destination when not all of them fit the budget
+     */
+    public double getScore() {
+        return score;
+    }
+
     public void setX(int x) {
         this.x = x;
     }
@@ -42,6 +45,10 @@ public class Coordinate extends DefaultEdge {
         this.number = number;
     }
 
+    public void setScore(double score) {
+        this.score = score;
+    }
+
     public String toString() {
         return String.format("Num: %d x: %d y: %d\n", getNumber(),getX(),  getY());
     }
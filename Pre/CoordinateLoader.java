@@ -0,0 +1,329 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+* Streams a coordinate file straight into primitive arrays, converting
+* feet to robot units as each value is read
+* The format is picked from the content:
+*   JSON   - {"1": [x, y], "2": [x, y, score], ...}
+*   CSV    - one "number,x,y[,score]" line per destination, # comments
+*   binary - "DE2C", int count, then count x (int number, double x, double y, double score)
+* Malformed input is reported with its line and column (or entry for binary)
+*/
+public class CoordinateLoader {
+    private static final byte[] MAGIC = {'D', 'E', '2', 'C'};
+
+    private final String name;
+    private int[] numbers = new int[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private double[] scores = new double[16];
+    private int count;
+
+    //reader state for the text formats
+    private Reader in;
+    private final char[] buf = new char[8192];
+    private int bufLen, bufPos;
+    private int line = 1, col = 0;
+    private int peeked = -2;
+
+    private CoordinateLoader(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Loads a JSON, CSV or binary coordinate file
+     */
+    public static Coordinate[] load(File file) throws IOException {
+        CoordinateLoader loader = new CoordinateLoader(file.getName());
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            stream.mark(MAGIC.length);
+            byte[] head = new byte[MAGIC.length];
+            int read = stream.readNBytes(head, 0, head.length);
+            stream.reset();
+            if (read == MAGIC.length && Arrays.equals(head, MAGIC)) {
+                loader.readBinary(new DataInputStream(stream));
+            } else {
+                loader.in = new InputStreamReader(stream, StandardCharsets.UTF_8);
+                if (loader.peekNonSpace() == '{')
+                    loader.readJson();
+                else
+                    loader.readCsv();
+            }
+        }
+        return loader.toCoordinates();
+    }
+
+    /**
+     * Writes destinations (in feet) in the binary format, for large generated fields
+     */
+    public static void writeBinary(File file, double[] xFeet, double[] yFeet, double[] score) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(MAGIC);
+            out.writeInt(xFeet.length);
+            for (int i = 0; i < xFeet.length; i++) {
+                out.writeInt(i + 1);
+                out.writeDouble(xFeet[i]);
+                out.writeDouble(yFeet[i]);
+                out.writeDouble(score == null ? 1 : score[i]);
+            }
+        }
+    }
+
+    /**
+     * Orders the destinations by number and checks they run 1..N
+     */
+    private Coordinate[] toCoordinates() throws IOException {
+        Coordinate[] coords = new Coordinate[count];
+        for (int i = 0; i < count; i++) {
+            int number = numbers[i];
+            if (number < 1 || number > count)
+                throw new IOException(name + ": " + count + " destinations but one is numbered " + number);
+            if (coords[number - 1] != null)
+                throw new IOException(name + ": destination " + number + " appears twice");
+            Coordinate c = new Coordinate(xs[i], ys[i]);
+            c.setNumber(number);
+            c.setScore(scores[i]);
+            coords[number - 1] = c;
+        }
+        return coords;
+    }
+
+    private void add(int number, double xFeet, double yFeet, double score) {
+        if (count == xs.length) {
+            numbers = Arrays.copyOf(numbers, count * 2);
+            xs = Arrays.copyOf(xs, count * 2);
+            ys = Arrays.copyOf(ys, count * 2);
+            scores = Arrays.copyOf(scores, count * 2);
+        }
+        numbers[count] = number;
+        xs[count] = AssemblyWriter.toRobotUnits(xFeet);
+        ys[count] = AssemblyWriter.toRobotUnits(yFeet);
+        scores[count] = score;
+        count++;
+    }
+
+    /* --- BINARY --- */
+    private void readBinary(DataInputStream data) throws IOException {
+        data.skipNBytes(MAGIC.length);
+        int n = data.readInt();
+        if (n < 0)
+            throw new IOException(name + ": negative destination count " + n);
+        for (int i = 0; i < n; i++) {
+            try {
+                add(data.readInt(), data.readDouble(), data.readDouble(), data.readDouble());
+            } catch (IOException e) {
+                throw new IOException(name + ": entry " + (i + 1) + " of " + n + " is truncated", e);
+            }
+        }
+    }
+
+    /* --- JSON --- */
+    private void readJson() throws IOException {
+        expect('{');
+        if (peekNonSpace() == '}') {
+            next();
+        } else {
+            while (true) {
+                expect('"');
+                int number = readInteger();
+                expect('"');
+                expect(':');
+                expect('[');
+                double x = readNumber();
+                expect(',');
+                double y = readNumber();
+                double score = 1;
+                if (peekNonSpace() == ',') {
+                    next();
+                    score = readNumber();
+                }
+                expect(']');
+                add(number, x, y, score);
+                int c = nextNonSpace();
+                if (c == '}')
+                    break;
+                if (c != ',')
+                    throw error("expected ',' or '}'", c);
+            }
+        }
+        int c = nextNonSpace();
+        if (c != -1)
+            throw error("unexpected content after the closing '}'", c);
+    }
+
+    /* --- CSV --- */
+    private void readCsv() throws IOException {
+        while (peekNonSpace() != -1) {
+            int c = peek();
+            if (c == '#' || (count == 0 && line == 1 && !isNumberStart(c))) {
+                //comment or header line
+                while (c != '\n' && c != -1) {
+                    next();
+                    c = peek();
+                }
+                continue;
+            }
+            int number = readInteger();
+            expect(',');
+            double x = readNumber();
+            expect(',');
+            double y = readNumber();
+            double score = 1;
+            if (peekInline() == ',') {
+                next();
+                score = readNumber();
+            }
+            add(number, x, y, score);
+            c = peekInline();
+            if (c != '\n' && c != -1)
+                throw error("expected end of line", c);
+        }
+    }
+
+    /* --- TEXT HELPERS --- */
+    /**
+     * Parses a decimal number without building a String
+     */
+    private double readNumber() throws IOException {
+        int c = peekNonSpace();
+        if (!isNumberStart(c))
+            throw error("expected a number", c);
+        boolean negative = c == '-';
+        if (c == '-' || c == '+')
+            next();
+        long mantissa = 0;
+        int scale = 0, digits = 0;
+        while (isDigit(peek())) {
+            if (mantissa < Long.MAX_VALUE / 10)
+                mantissa = mantissa * 10 + (next() - '0');
+            else {
+                next();
+                scale++;
+            }
+            digits++;
+        }
+        if (peek() == '.') {
+            next();
+            while (isDigit(peek())) {
+                if (mantissa < Long.MAX_VALUE / 10) {
+                    mantissa = mantissa * 10 + (next() - '0');
+                    scale--;
+                } else {
+                    next();
+                }
+                digits++;
+            }
+        }
+        if (digits == 0)
+            throw error("expected digits", peek());
+        if (peek() == 'e' || peek() == 'E') {
+            next();
+            boolean negExp = peek() == '-';
+            if (peek() == '-' || peek() == '+')
+                next();
+            if (!isDigit(peek()))
+                throw error("expected exponent digits", peek());
+            int exp = 0;
+            while (isDigit(peek()))
+                exp = Math.min(exp * 10 + (next() - '0'), 400);
+            scale += negExp ? -exp : exp;
+        }
+        double value = scale >= 0 ? mantissa * Math.pow(10, scale) : mantissa / Math.pow(10, -scale);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a destination number: digits only, no sign, fraction or exponent
+     */
+    private int readInteger() throws IOException {
+        int c = peekNonSpace();
+        if (!isDigit(c))
+            throw error("expected a destination number", c);
+        long value = 0;
+        while (isDigit(peek())) {
+            value = value * 10 + (peek() - '0');
+            if (value > Integer.MAX_VALUE)
+                throw error("destination number is too large", peek());
+            next();
+        }
+        c = peek();
+        if (c == '.' || c == 'e' || c == 'E')
+            throw error("destination numbers must be whole", c);
+        return (int) value;
+    }
+
+    private void expect(int wanted) throws IOException {
+        int c = nextNonSpace();
+        if (c != wanted)
+            throw error("expected '" + (char) wanted + "'", c);
+    }
+
+    private IOException error(String message, int found) {
+        String what = found == -1 ? "end of file" : "'" + (char) found + "'";
+        return new IOException(name + ":" + line + ":" + (col + 1) + ": " + message + ", found " + what);
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            if (bufPos == bufLen) {
+                bufLen = in.read(buf, 0, buf.length);
+                bufPos = 0;
+            }
+            peeked = bufLen <= 0 ? -1 : buf[bufPos++];
+        }
+        return peeked;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (c == '\n') {
+            line++;
+            col = 0;
+        } else if (c != -1) {
+            col++;
+        }
+        return c;
+    }
+
+    private int peekNonSpace() throws IOException {
+        while (Character.isWhitespace(peek()))
+            next();
+        return peek();
+    }
+
+    /**
+     * Skips spaces and tabs but stops at line ends, for CSV
+     */
+    private int peekInline() throws IOException {
+        int c;
+        while ((c = peek()) == ' ' || c == '\t' || c == '\r')
+            next();
+        return c;
+    }
+
+    private int nextNonSpace() throws IOException {
+        peekNonSpace();
+        return next();
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNumberStart(int c) {
+        return isDigit(c) || c == '-' || c == '+' || c == '.';
+    }
+}
@@ -0,0 +1,22 @@
+/**
+* Scores a tour (an int[] permutation starting at the origin)
+* Solvers compare and improve tours through this, so swapping the
+* model changes what they minimise
+*/
+public interface CostModel {
+    /**
+     * Total cost of driving the tour, lower is better
+     */
+    double tourCost(int[] tour);
+
+    /**
+     * Cost of leaving cur for next after arriving from prev,
+     * prev == cur for the first leg out of the starting pose
+     */
+    double legCost(int prev, int cur, int next);
+
+    /**
+     * Unit of tourCost, used when logging
+     */
+    String unit();
+}
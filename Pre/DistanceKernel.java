@@ -0,0 +1,81 @@
+/**
+* Fills a whole distance matrix from int robot-unit coordinates
+* Each row is one flat loop over int and double arrays with nothing
+* but arithmetic inside, which the JIT can unroll and vectorise
+* ROBOT reproduces the L2Estimate subroutine of move_to_points.ASM bit
+* for bit, 16-bit wraparound and truncating shifts included, so the
+* planner minimises the same distances the robot measures
+*/
+public class DistanceKernel {
+    /** max(|dx|,|dy|) * 246/256 + min(|dx|,|dy|) * 104/256, as in L2Estimate */
+    public static final int MAX_FACTOR = 246;
+    public static final int MIN_FACTOR = 104;
+
+    public enum Metric {
+        /** True straight line distance */
+        EUCLIDEAN,
+        /** The robot's integer estimate */
+        ROBOT
+    }
+
+    /**
+     * Fills out[i * n + j] with the distance from point i to point j
+     */
+    public static void fill(int[] xs, int[] ys, double[] out, Metric metric) {
+        int n = xs.length;
+        for (int i = 0; i < n; i++)
+            row(xs, ys, n, i, out, i * n, metric);
+    }
+
+    /**
+     * Fills out[base + j] with the distance from point i to each of the first count points
+     */
+    public static void row(int[] xs, int[] ys, int count, int i, double[] out, int base, Metric metric) {
+        if (metric == Metric.ROBOT)
+            robotRow(xs, ys, count, i, out, base);
+        else
+            euclideanRow(xs, ys, count, i, out, base);
+    }
+
+    private static void euclideanRow(int[] xs, int[] ys, int count, int i, double[] out, int base) {
+        int xi = xs[i], yi = ys[i];
+        for (int j = 0; j < count; j++) {
+            double dx = xs[j] - xi;
+            double dy = ys[j] - yi;
+            out[base + j] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    private static void robotRow(int[] xs, int[] ys, int count, int i, double[] out, int base) {
+        int xi = xs[i], yi = ys[i];
+        for (int j = 0; j < count; j++)
+            out[base + j] = robot(xs[j] - xi, ys[j] - yi);
+    }
+
+    /**
+     * L2Estimate of an offset, with every intermediate kept to 16 bits
+     * like the SCOMP accumulator
+     */
+    public static int robot(int dx, int dy) {
+        int ax = (short) Math.abs((short) dx);
+        int ay = (short) Math.abs((short) dy);
+        //LOAD |y|, SUB |x|, JNEG GDSwap; the swap is done with a mask to stay branch free
+        int swap = ((short) (ay - ax)) >> 31;
+        int max = ay ^ ((ax ^ ay) & swap);
+        int min = ax ^ ((ax ^ ay) & swap);
+        //Mult16s, then the middle 16 bits of the 32-bit product
+        int scaledMax = (short) ((max * MAX_FACTOR) >> 8);
+        int scaledMin = (short) ((min * MIN_FACTOR) >> 8);
+        return (short) (scaledMax + scaledMin);
+    }
+
+    /**
+     * Reads a metric=euclidean|robot argument, EUCLIDEAN if absent
+     */
+    public static Metric metricArg(String[] args) {
+        for (String arg : args)
+            if (arg.startsWith("metric="))
+                return Metric.valueOf(arg.substring("metric=".length()).toUpperCase());
+        return Metric.EUCLIDEAN;
+    }
+}
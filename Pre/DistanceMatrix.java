@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+* Flat distance matrix over the origin and the loaded Coordinates
+* Index 0 is always the origin, index i is the (i - 1)th loaded Coordinate
+* Tours are int[] permutations of these indices that start with 0
+* Distances are straight line by default, or the robot's own estimate
+* add, move and remove edit points in place (for IncrementalPlanner),
+* recomputing only the affected row and column; rows are stride long so
+* adding a point rarely means copying the matrix
+*/
+public class DistanceMatrix implements CostModel {
+    private int size;
+    private int stride;
+    private double[] dist;
+    private Coordinate[] points;
+    private int[] xs, ys;
+    private final DistanceKernel.Metric metric;
+    private boolean detours;
+
+    public DistanceMatrix(Coordinate origin, Coordinate[] coords) {
+        this(origin, coords, DistanceKernel.Metric.EUCLIDEAN);
+    }
+
+    public DistanceMatrix(Coordinate origin, Coordinate[] coords, DistanceKernel.Metric metric) {
+        this.metric = metric;
+        size = coords.length + 1;
+        points = new Coordinate[size];
+        points[0] = origin;
+        System.arraycopy(coords, 0, points, 1, coords.length);
+        xs = new int[size];
+        ys = new int[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = points[i].getX();
+            ys[i] = points[i].getY();
+        }
+        stride = size;
+        dist = new double[size * size];
+        DistanceKernel.fill(xs, ys, dist, metric);
+    }
+
+    /**
+     * Appends a point and returns its index
+     */
+    public int add(Coordinate c) {
+        if (size == stride)
+            grow(Math.max(4, stride * 2));
+        points[size] = c;
+        size++;
+        update(size - 1);
+        return size - 1;
+    }
+
+    /**
+     * Gives a point a new position; c replaces the Coordinate at index
+     */
+    public void move(int index, Coordinate c) {
+        points[index] = c;
+        update(index);
+    }
+
+    /**
+     * Drops a destination; the last point takes over its index
+     */
+    public void remove(int index) {
+        if (index == 0)
+            throw new IllegalArgumentException("The origin cannot be removed");
+        int last = size - 1;
+        size--;
+        if (index == last) {
+            points[last] = null;
+            return;
+        }
+        points[index] = points[last];
+        points[last] = null;
+        xs[index] = xs[last];
+        ys[index] = ys[last];
+        System.arraycopy(dist, last * stride, dist, index * stride, size);
+        dist[index * stride + index] = 0;
+        for (int i = 0; i < size; i++)
+            dist[i * stride + index] = dist[index * stride + i];
+    }
+
+    /**
+     * Overrides one leg, both ways, e.g. with a route around an obstacle;
+     * the override lasts until either point is moved
+     */
+    public void setLeg(int from, int to, double distance) {
+        dist[from * stride + to] = distance;
+        dist[to * stride + from] = distance;
+        detours = true;
+    }
+
+    /**
+     * Whether some legs are longer than the metric between their points,
+     * so geometric shortcuts like KdTree no longer find the nearest point
+     */
+    public boolean hasDetours() {
+        return detours;
+    }
+
+    /**
+     * Recomputes the row and column of one point
+     */
+    private void update(int index) {
+        xs[index] = points[index].getX();
+        ys[index] = points[index].getY();
+        DistanceKernel.row(xs, ys, size, index, dist, index * stride, metric);
+        for (int i = 0; i < size; i++)
+            dist[i * stride + index] = dist[index * stride + i];
+    }
+
+    private void grow(int capacity) {
+        double[] grown = new double[capacity * capacity];
+        for (int i = 0; i < size; i++)
+            System.arraycopy(dist, i * stride, grown, i * capacity, size);
+        dist = grown;
+        stride = capacity;
+        points = Arrays.copyOf(points, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+
+    /**
+     * Number of points in the matrix, origin included
+     */
+    public int size() {
+        return size;
+    }
+
+    public double get(int from, int to) {
+        return dist[from * stride + to];
+    }
+
+    public Coordinate point(int index) {
+        return points[index];
+    }
+
+    public DistanceKernel.Metric metric() {
+        return metric;
+    }
+
+    /**
+     * Sums the legs of a tour
+     */
+    public double pathLength(int[] tour) {
+        double pathLength = 0;
+        for (int i = 1; i < tour.length; i++)
+            pathLength += dist[tour[i - 1] * stride + tour[i]];
+        return pathLength;
+    }
+
+    public double tourCost(int[] tour) {
+        return pathLength(tour);
+    }
+
+    public double legCost(int prev, int cur, int next) {
+        return dist[cur * stride + next];
+    }
+
+    public String unit() {
+        return "robot units";
+    }
+
+    /**
+     * Converts a tour to the Coordinates it visits, leaving out the starting origin
+     */
+    public Coordinate[] toCoordinates(int[] tour) {
+        Coordinate[] out = new Coordinate[tour.length - 1];
+        for (int i = 1; i < tour.length; i++)
+            out[i - 1] = points[tour[i]];
+        return out;
+    }
+
+    /**
+     * Formats a tour the same way a List of its Coordinates prints
+     */
+    public String describe(int[] tour) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < tour.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(points[tour[i]]);
+        }
+        return sb.append("]").toString();
+    }
+}
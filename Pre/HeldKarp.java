@@ -0,0 +1,138 @@
+import java.util.stream.IntStream;
+
+/**
+* Exact Held-Karp dynamic program for the open path that starts at
+* the origin and may end at any destination
+* States are (visited set, last destination), laid out flat as
+* cost[mask * n + last] and filled one subset size at a time
+* The table holds (1 << n) * n doubles, 8 MB at MAX_DESTINATIONS; each
+* further destination doubles it, and BatchRunner may hold one per core
+*/
+public class HeldKarp {
+    /** Largest destination count the bitmask table is sized for */
+    public static final int MAX_DESTINATIONS = 16;
+    /** Layers smaller than this are not worth splitting across cores */
+    private static final int PARALLEL_LAYER = 1 << 12;
+
+    private final int n;
+    private final double[] dist;
+    private final double[] start;
+    private final double[] cost;
+
+    public HeldKarp(DistanceMatrix matrix) {
+        n = matrix.size() - 1;
+        if (n > MAX_DESTINATIONS)
+            throw new IllegalArgumentException("Held-Karp supports at most " + MAX_DESTINATIONS + " destinations, got " + n);
+        dist = new double[n * n];
+        start = new double[n];
+        for (int i = 0; i < n; i++) {
+            start[i] = matrix.get(0, i + 1);
+            for (int j = 0; j < n; j++)
+                dist[i * n + j] = matrix.get(i + 1, j + 1);
+        }
+        cost = new double[n == 0 ? 0 : (1 << n) * n];
+    }
+
+    /**
+     * Solves the open path and returns it as a tour starting at 0
+     */
+    public int[] solve() {
+        return solve(Long.MAX_VALUE);
+    }
+
+    /**
+     * Like solve(), but gives up between layers once System.nanoTime()
+     * passes deadline (Long.MAX_VALUE for none) and returns null
+     */
+    public int[] solve(long deadline) {
+        Preprocess.log("---Held-Karp Begin---");
+        int[] tour = new int[n + 1];
+        if (n == 0) {
+            Preprocess.log("---Held-Karp End---\n");
+            return tour;
+        }
+
+        int[] masks = masksByLayer();
+        int offset = 0;
+        for (int layer = 1; layer <= n; layer++) {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+                Preprocess.log("Out of time at layer " + layer + " of " + n);
+                Preprocess.log("---Held-Karp End---\n");
+                return null;
+            }
+            int count = binomial(n, layer);
+            IntStream range = IntStream.range(offset, offset + count);
+            if (count >= PARALLEL_LAYER)
+                range = range.parallel();
+            range.forEach(k -> relax(masks[k]));
+            offset += count;
+        }
+
+        int full = (1 << n) - 1;
+        int last = 0;
+        for (int j = 1; j < n; j++)
+            if (cost[full * n + j] < cost[full * n + last])
+                last = j;
+
+        int mask = full;
+        for (int pos = n; pos >= 1; pos--) {
+            tour[pos] = last + 1;
+            int prevMask = mask & ~(1 << last);
+            int prev = -1;
+            for (int p = 0; p < n && prevMask != 0; p++) {
+                if ((prevMask & (1 << p)) != 0 && cost[prevMask * n + p] + dist[p * n + last] == cost[mask * n + last]) {
+                    prev = p;
+                    break;
+                }
+            }
+            mask = prevMask;
+            last = prev;
+        }
+        Preprocess.log("---Held-Karp End---\n");
+        return tour;
+    }
+
+    /**
+     * Fills cost[mask * n + last] for every last in mask from the smaller subsets
+     */
+    private void relax(int mask) {
+        int base = mask * n;
+        for (int lastBits = mask; lastBits != 0; lastBits &= lastBits - 1) {
+            int last = Integer.numberOfTrailingZeros(lastBits);
+            int prevMask = mask ^ (1 << last);
+            if (prevMask == 0) {
+                cost[base + last] = start[last];
+                continue;
+            }
+            int prevBase = prevMask * n;
+            double best = Double.MAX_VALUE;
+            for (int prevBits = prevMask; prevBits != 0; prevBits &= prevBits - 1) {
+                int p = Integer.numberOfTrailingZeros(prevBits);
+                double c = cost[prevBase + p] + dist[p * n + last];
+                if (c < best)
+                    best = c;
+            }
+            cost[base + last] = best;
+        }
+    }
+
+    /**
+     * All non-empty subsets, grouped by size in increasing order
+     */
+    private int[] masksByLayer() {
+        int[] offsets = new int[n + 2];
+        for (int layer = 1; layer <= n; layer++)
+            offsets[layer + 1] = offsets[layer] + binomial(n, layer);
+        int[] masks = new int[(1 << n) - 1];
+        for (int mask = 1; mask < (1 << n); mask++)
+            masks[offsets[Integer.bitCount(mask)]++] = mask;
+        return masks;
+    }
+
+    private static int binomial(int n, int k) {
+        long result = 1;
+        for (int i = 1; i <= k; i++)
+            result = result * (n - k + i) / i;
+        return (int) result;
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+* Keeps a distance matrix and a planned tour in memory and updates both
+* when a destination is added, moved or removed, instead of loading and
+* solving the whole field again
+* A changed destination is put back by cheapest insertion and the tour is
+* then repaired with 2-opt and relocation moves around the positions that
+* changed; only the changed point's matrix row and column are recomputed
+* Usage: IncrementalPlanner [Preprocess args...], then commands on stdin:
+*   add N X Y, move N X Y (feet), remove N, show, write, quit
+*/
+public class IncrementalPlanner {
+    /** Positions either side of a change that the repair looks at */
+    public static final int REPAIR_WINDOW = 4;
+    private static final double EPSILON = 1e-9;
+
+    private final DistanceMatrix matrix;
+    private int[] tour;
+
+    /**
+     * Starts from a tour over every point of the matrix, e.g. from Preprocess.plan
+     */
+    public IncrementalPlanner(DistanceMatrix matrix, int[] tour) {
+        if (tour.length != matrix.size())
+            throw new IllegalArgumentException("The tour must visit all " + (matrix.size() - 1) + " destinations");
+        this.matrix = matrix;
+        this.tour = tour.clone();
+    }
+
+    /**
+     * Adds a destination (robot units) and fits it into the tour
+     */
+    public void add(Coordinate c) {
+        if (find(c.getNumber()) > 0)
+            throw new IllegalArgumentException("Destination " + c.getNumber() + " already exists");
+        insert(matrix.add(c));
+    }
+
+    /**
+     * Moves a destination to (x, y) in robot units
+     */
+    public void move(int number, int x, int y) {
+        int index = indexOf(number);
+        Coordinate moved = new Coordinate(x, y);
+        moved.setNumber(number);
+        moved.setScore(matrix.point(index).getScore());
+        matrix.move(index, moved);
+        int at = take(index);
+        insert(index);
+        repair(at);
+    }
+
+    /**
+     * Drops a destination and closes the gap it leaves
+     */
+    public void remove(int number) {
+        int index = indexOf(number);
+        int at = take(index);
+        int last = matrix.size() - 1;
+        matrix.remove(index);
+        for (int i = 0; i < tour.length; i++)
+            if (tour[i] == last)
+                tour[i] = index;
+        repair(at);
+    }
+
+    public int[] getTour() {
+        return tour.clone();
+    }
+
+    public DistanceMatrix getMatrix() {
+        return matrix;
+    }
+
+    public double getPathLength() {
+        return matrix.pathLength(tour);
+    }
+
+    /**
+     * Matrix index of the destination with this number, or -1
+     */
+    private int find(int number) {
+        for (int i = 1; i < matrix.size(); i++)
+            if (matrix.point(i).getNumber() == number)
+                return i;
+        return -1;
+    }
+
+    private int indexOf(int number) {
+        int index = find(number);
+        if (index < 0)
+            throw new IllegalArgumentException("No destination " + number);
+        return index;
+    }
+
+    /**
+     * Takes a point out of the tour and returns the position it had
+     */
+    private int take(int point) {
+        int at = 0;
+        while (tour[at] != point)
+            at++;
+        int[] shorter = new int[tour.length - 1];
+        System.arraycopy(tour, 0, shorter, 0, at);
+        System.arraycopy(tour, at + 1, shorter, at, tour.length - at - 1);
+        tour = shorter;
+        return at;
+    }
+
+    /**
+     * Cheapest insertion of a point that is not in the tour, then repair
+     */
+    private void insert(int point) {
+        int bestAt = tour.length;
+        double bestCost = matrix.get(tour[tour.length - 1], point);
+        for (int at = 1; at < tour.length; at++) {
+            double cost = matrix.get(tour[at - 1], point) + matrix.get(point, tour[at]) - matrix.get(tour[at - 1], tour[at]);
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestAt = at;
+            }
+        }
+        int[] longer = new int[tour.length + 1];
+        System.arraycopy(tour, 0, longer, 0, bestAt);
+        longer[bestAt] = point;
+        System.arraycopy(tour, bestAt, longer, bestAt + 1, tour.length - bestAt);
+        tour = longer;
+        repair(bestAt);
+    }
+
+    /**
+     * 2-opt and single point relocation moves that involve a position
+     * near at, against every other position, until none helps
+     */
+    private void repair(int at) {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int from = Math.max(1, at - REPAIR_WINDOW);
+            int to = Math.min(tour.length - 1, at + REPAIR_WINDOW);
+            for (int i = from; i <= to && !improved; i++)
+                improved = twoOpt(i) || relocate(i);
+        }
+    }
+
+    /**
+     * Best reversal of tour[i..j] or tour[j..i] for any j
+     */
+    private boolean twoOpt(int i) {
+        int bestA = -1, bestB = -1;
+        double bestDelta = -EPSILON;
+        for (int j = 1; j < tour.length; j++) {
+            if (j == i)
+                continue;
+            int a = Math.min(i, j), b = Math.max(i, j);
+            double delta = reversalDelta(a, b);
+            if (delta < bestDelta) {
+                bestDelta = delta;
+                bestA = a;
+                bestB = b;
+            }
+        }
+        if (bestA < 0)
+            return false;
+        for (int a = bestA, b = bestB; a < b; a++, b--) {
+            int t = tour[a];
+            tour[a] = tour[b];
+            tour[b] = t;
+        }
+        return true;
+    }
+
+    private double reversalDelta(int a, int b) {
+        double delta = matrix.get(tour[a - 1], tour[b]) - matrix.get(tour[a - 1], tour[a]);
+        if (b < tour.length - 1)
+            delta += matrix.get(tour[a], tour[b + 1]) - matrix.get(tour[b], tour[b + 1]);
+        return delta;
+    }
+
+    /**
+     * Moves tour[i] to sit after whichever other position is cheapest,
+     * if that is shorter than where it is
+     */
+    private boolean relocate(int i) {
+        int point = tour[i];
+        int last = tour.length - 1;
+        double gain = matrix.get(tour[i - 1], point)
+            + (i < last ? matrix.get(point, tour[i + 1]) - matrix.get(tour[i - 1], tour[i + 1]) : 0);
+        int bestAfter = -1;
+        double bestCost = gain - EPSILON;
+        for (int p = 0; p <= last; p++) {
+            if (p == i - 1 || p == i)
+                continue;
+            double cost = matrix.get(tour[p], point)
+                + (p < last ? matrix.get(point, tour[p + 1]) - matrix.get(tour[p], tour[p + 1]) : 0);
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestAfter = p;
+            }
+        }
+        if (bestAfter < 0)
+            return false;
+        if (bestAfter < i) {
+            System.arraycopy(tour, bestAfter + 1, tour, bestAfter + 2, i - bestAfter - 1);
+            tour[bestAfter + 1] = point;
+        } else {
+            System.arraycopy(tour, i + 1, tour, i, bestAfter - i);
+            tour[bestAfter] = point;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("---Incremental Begin---");
+        if (ObstacleLegs.obstaclesArg(args) != null)
+            //edits recompute straight legs, which could run through the walls
+            throw new IllegalArgumentException("IncrementalPlanner does not support obstacles=, plan with Preprocess instead");
+        Coordinate[] coords = AssemblyWriter.populate();
+        Preprocess p = new Preprocess();
+        DistanceMatrix matrix = new DistanceMatrix(p.origin, coords, DistanceKernel.metricArg(args));
+        int[] tour = p.plan(matrix, args);
+        if (tour.length != matrix.size()) {
+            System.out.println("The plan skips destinations (budget), starting from nearest neighbor instead");
+            tour = p.nearestNeighbor(matrix);
+        }
+        IncrementalPlanner planner = new IncrementalPlanner(matrix, tour);
+        File[] targets = Preprocess.asmTargets(args);
+        boolean precompute = Arrays.asList(args).contains("precompute");
+        System.out.println("Path Length - " + planner.getPathLength());
+        System.out.println("Commands: add N X Y | move N X Y | remove N | show | write | quit (X Y in feet)");
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            try {
+                switch (words[0]) {
+                    case "add":
+                        Coordinate c = new Coordinate(AssemblyWriter.toRobotUnits(Double.parseDouble(words[2])),
+                            AssemblyWriter.toRobotUnits(Double.parseDouble(words[3])));
+                        c.setNumber(Integer.parseInt(words[1]));
+                        planner.add(c);
+                        break;
+                    case "move":
+                        planner.move(Integer.parseInt(words[1]), AssemblyWriter.toRobotUnits(Double.parseDouble(words[2])),
+                            AssemblyWriter.toRobotUnits(Double.parseDouble(words[3])));
+                        break;
+                    case "remove":
+                        planner.remove(Integer.parseInt(words[1]));
+                        break;
+                    case "show":
+                        System.out.println(matrix.describe(planner.tour));
+                        break;
+                    case "write":
+                        Coordinate[] out = matrix.toCoordinates(planner.tour);
+                        if (precompute)
+                            AssemblyWriter.writePrecomputedToASM(out, targets);
+                        else if (targets.length == 0)
+                            AssemblyWriter.writeToASM(out);
+                        else
+                            AssemblyWriter.writeToASM(out, targets);
+                        break;
+                    case "quit":
+                        System.out.println("---Incremental End---\n");
+                        return;
+                    case "":
+                        continue;
+                    default:
+                        System.out.println("Unknown command " + words[0]);
+                        continue;
+                }
+                System.out.println("Path Length - " + planner.getPathLength());
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+        System.out.println("---Incremental End---\n");
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+* Binary min-heap of the items 0..capacity-1 keyed by doubles, all in
+* primitive arrays, that can change the key of any item it holds
+* Each item remembers its heap slot, so add, poll, update and remove
+* are O(log n) and contains and key are O(1)
+*/
+public class IndexedHeap {
+    /** Item held by each heap slot */
+    private final int[] heap;
+    /** Heap slot of each item, -1 when it is not in the heap */
+    private final int[] slot;
+    private final double[] key;
+    private int size;
+
+    public IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        slot = new int[capacity];
+        key = new double[capacity];
+        Arrays.fill(slot, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int item) {
+        return slot[item] >= 0;
+    }
+
+    public double key(int item) {
+        return key[item];
+    }
+
+    /**
+     * Adds an item that is not in the heap yet
+     */
+    public void add(int item, double value) {
+        key[item] = value;
+        heap[size] = item;
+        slot[item] = size;
+        up(size++);
+    }
+
+    /**
+     * Changes the key of an item in the heap, either way
+     */
+    public void update(int item, double value) {
+        double old = key[item];
+        key[item] = value;
+        if (value < old)
+            up(slot[item]);
+        else
+            down(slot[item]);
+    }
+
+    /**
+     * The item with the smallest key, left in the heap
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Removes and returns the item with the smallest key
+     */
+    public int poll() {
+        int top = heap[0];
+        remove(top);
+        return top;
+    }
+
+    public void remove(int item) {
+        int at = slot[item];
+        int last = heap[--size];
+        slot[item] = -1;
+        if (at == size)
+            return;
+        heap[at] = last;
+        slot[last] = at;
+        up(at);
+        down(slot[last]);
+    }
+
+    private void up(int at) {
+        int item = heap[at];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (key[heap[parent]] <= key[item])
+                break;
+            heap[at] = heap[parent];
+            slot[heap[at]] = at;
+            at = parent;
+        }
+        heap[at] = item;
+        slot[item] = at;
+    }
+
+    private void down(int at) {
+        int item = heap[at];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && key[heap[child + 1]] < key[heap[child]])
+                child++;
+            if (key[item] <= key[heap[child]])
+                break;
+            heap[at] = heap[child];
+            slot[heap[at]] = at;
+            at = child;
+        }
+        heap[at] = item;
+        slot[item] = at;
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+
+/**
+* Insertion heuristics: the path grows from the origin one destination at a
+* time, each put where it lengthens the path least (between two stops, or
+* after the last one since the path does not return)
+* The rule picks which destination goes next; the candidates sit in an
+* IndexedHeap keyed by their distance to the path or their insertion cost,
+* and only keys the new stop changes are updated, so a tour over n points
+* takes O(n^2 log n)
+*/
+public class InsertionConstructor implements TourConstructor {
+    public enum Rule {
+        /** The destination closest to the path */
+        NEAREST("nearest", "Nearest Insertion"),
+        /** The destination furthest from the path, outlining the field first */
+        FARTHEST("farthest", "Farthest Insertion"),
+        /** The destination that is cheapest to insert */
+        CHEAPEST("cheapest", "Cheapest Insertion"),
+        /** Cheapest insertion into a path around the convex hull of the destinations */
+        HULL("hull", "Convex Hull Insertion");
+
+        final String key, name;
+
+        Rule(String key, String name) {
+            this.key = key;
+            this.name = name;
+        }
+    }
+
+    private final Rule rule;
+
+    private DistanceMatrix matrix;
+    /** The stop after each stop on the path, -1 for the last one or one not on it */
+    private int[] next;
+    private boolean[] onPath;
+
+    public InsertionConstructor(Rule rule) {
+        this.rule = rule;
+    }
+
+    public int[] construct(DistanceMatrix matrix) {
+        this.matrix = matrix;
+        int size = matrix.size();
+        next = new int[size];
+        onPath = new boolean[size];
+        Arrays.fill(next, -1);
+        onPath[0] = true;
+        if (rule == Rule.HULL)
+            outlineHull();
+        IndexedHeap heap = new IndexedHeap(size);
+        if (rule == Rule.NEAREST || rule == Rule.FARTHEST)
+            insertByDistance(heap);
+        else
+            insertByCost(heap);
+
+        int[] tour = new int[size];
+        for (int i = 1, at = next[0]; at >= 0; at = next[at])
+            tour[i++] = at;
+        this.matrix = null;
+        return tour;
+    }
+
+    public String key() {
+        return rule.key;
+    }
+
+    public String name() {
+        return rule.name;
+    }
+
+    /**
+     * Nearest and farthest insertion: destinations are keyed by their
+     * distance to the closest stop (negated for farthest), which only
+     * ever shrinks as stops are added
+     */
+    private void insertByDistance(IndexedHeap heap) {
+        int size = matrix.size();
+        double sign = rule == Rule.FARTHEST ? -1 : 1;
+        double[] distance = new double[size];
+        for (int j = 1; j < size; j++) {
+            if (onPath[j])
+                continue;
+            distance[j] = Double.POSITIVE_INFINITY;
+            for (int at = 0; at >= 0; at = next[at])
+                distance[j] = Math.min(distance[j], matrix.get(at, j));
+            heap.add(j, sign * distance[j]);
+        }
+        while (!heap.isEmpty()) {
+            int point = heap.poll();
+            int after = 0;
+            double best = Double.POSITIVE_INFINITY;
+            for (int at = 0; at >= 0; at = next[at]) {
+                double cost = insertionCost(at, point);
+                if (cost < best) {
+                    best = cost;
+                    after = at;
+                }
+            }
+            link(after, point);
+            for (int j = 1; j < size; j++) {
+                if (heap.contains(j) && matrix.get(point, j) < distance[j]) {
+                    distance[j] = matrix.get(point, j);
+                    heap.update(j, sign * distance[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cheapest insertion: destinations are keyed by the cost of their best
+     * slot; inserting a stop only adds the two slots around it, so each
+     * destination just checks those two. One whose best slot was split
+     * and that finds nothing as cheap keeps its old cost as a lower bound
+     * and is marked stale, to rescan the path only if it reaches the top
+     */
+    private void insertByCost(IndexedHeap heap) {
+        int size = matrix.size();
+        int[] bestAfter = new int[size];
+        boolean[] stale = new boolean[size];
+        for (int j = 1; j < size; j++) {
+            if (!onPath[j])
+                heap.add(j, bestSlot(j, bestAfter));
+        }
+        while (!heap.isEmpty()) {
+            int point = heap.peek();
+            if (stale[point]) {
+                stale[point] = false;
+                heap.update(point, bestSlot(point, bestAfter));
+                continue;
+            }
+            heap.poll();
+            int after = bestAfter[point];
+            link(after, point);
+            for (int j = 1; j < size; j++) {
+                if (!heap.contains(j))
+                    continue;
+                double before = insertionCost(after, j), behind = insertionCost(point, j);
+                double best = Math.min(before, behind);
+                if (best <= heap.key(j)) {
+                    bestAfter[j] = before <= behind ? after : point;
+                    stale[j] = false;
+                    heap.update(j, best);
+                } else if (bestAfter[j] == after) {
+                    stale[j] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the path for the cheapest slot for point, returns its cost
+     */
+    private double bestSlot(int point, int[] bestAfter) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int at = 0; at >= 0; at = next[at]) {
+            double cost = insertionCost(at, point);
+            if (cost < best) {
+                best = cost;
+                bestAfter[point] = at;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * How much longer the path gets with point right after stop at
+     */
+    private double insertionCost(int at, int point) {
+        int then = next[at];
+        if (then < 0)
+            return matrix.get(at, point);
+        return matrix.get(at, point) + matrix.get(point, then) - matrix.get(at, then);
+    }
+
+    private void link(int at, int point) {
+        next[point] = next[at];
+        next[at] = point;
+        onPath[point] = true;
+    }
+
+    /**
+     * Starts the path with the hull of the destinations (Andrew's monotone
+     * chain), entered at whichever vertex and direction make it shortest
+     */
+    private void outlineHull() {
+        int size = matrix.size();
+        if (size < 2)
+            return;
+        Integer[] order = new Integer[size - 1];
+        for (int i = 1; i < size; i++)
+            order[i - 1] = i;
+        Arrays.sort(order, (a, b) -> matrix.point(a).getX() != matrix.point(b).getX()
+            ? Integer.compare(matrix.point(a).getX(), matrix.point(b).getX())
+            : Integer.compare(matrix.point(a).getY(), matrix.point(b).getY()));
+        int[] hull = new int[2 * order.length];
+        int count = 0;
+        for (int i = 0; i < order.length; i++) {
+            while (count >= 2 && turn(hull[count - 2], hull[count - 1], order[i]) <= 0)
+                count--;
+            hull[count++] = order[i];
+        }
+        for (int i = order.length - 2, lower = count + 1; i >= 0; i--) {
+            while (count >= lower && turn(hull[count - 2], hull[count - 1], order[i]) <= 0)
+                count--;
+            hull[count++] = order[i];
+        }
+        if (count > 1)
+            count--; //the chain ends where it started
+
+        double perimeter = 0;
+        for (int i = 0; i < count; i++)
+            perimeter += matrix.get(hull[i], hull[(i + 1) % count]);
+        int start = 0, step = 1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            //forward from i leaves out the edge into i, backward the edge out of i
+            double forward = matrix.get(0, hull[i]) + perimeter - matrix.get(hull[(i + count - 1) % count], hull[i]);
+            double backward = matrix.get(0, hull[i]) + perimeter - matrix.get(hull[i], hull[(i + 1) % count]);
+            if (forward < best) {
+                best = forward;
+                start = i;
+                step = 1;
+            }
+            if (backward < best) {
+                best = backward;
+                start = i;
+                step = count - 1;
+            }
+        }
+        int at = 0;
+        for (int k = 0, i = start; k < count; k++, i = (i + step) % count) {
+            link(at, hull[i]);
+            at = hull[i];
+        }
+    }
+
+    /**
+     * Positive when a, b, c turn counterclockwise
+     */
+    private long turn(int a, int b, int c) {
+        long ax = matrix.point(a).getX(), ay = matrix.point(a).getY();
+        return (matrix.point(b).getX() - ax) * (matrix.point(c).getY() - ay)
+            - (matrix.point(b).getY() - ay) * (matrix.point(c).getX() - ax);
+    }
+}
@@ -0,0 +1,480 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+* Island model metaheuristic for fields of hundreds to thousands of points
+* Each core runs an island: even ones anneal a single tour, odd ones evolve
+* a small population with order crossover, both proposing 2-opt and node
+* insertion moves towards LocalSearch's candidate neighbours, scored in O(1)
+* on preallocated int[] tours without allocating
+* Islands work in epochs of a fixed number of moves; after each one the
+* best tour of every island migrates to the next island in the ring
+* Every island has its own seeded RNG and the exchange happens between
+* epochs, so the same seed, number of islands and number of epochs give
+* the same tour; the islands default to one per core, so set their number
+* to repeat a run on another machine
+*/
+public class IslandSolver {
+    /** Annealing moves per point and epoch */
+    private static final int ANNEAL_MOVES = 200;
+    /** Start temperature of the first annealing island, in mean nearest neighbour distances */
+    private static final double HOT = 0.5;
+    /** Children per genetic island and epoch */
+    private static final int CHILDREN = 8;
+    /** Improving moves tried on each child, per point */
+    private static final int CHILD_MOVES = 2;
+    private static final int POPULATION = 12;
+
+    private final DistanceMatrix matrix;
+    private final CostModel model;
+    private final LocalSearch search;
+    private final int size;
+    private final List<String> startNames = new ArrayList<>();
+    private final List<int[]> startTours = new ArrayList<>();
+    private int islands = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private long seed = 1;
+    private int maxEpochs = Integer.MAX_VALUE;
+    private int epochs;
+    private TourListener listener;
+
+    public IslandSolver(DistanceMatrix matrix, CostModel model) {
+        this(matrix, model, new LocalSearch(matrix, model));
+    }
+
+    /**
+     * Reuses the candidate lists of a search already built for matrix and model
+     */
+    public IslandSolver(DistanceMatrix matrix, CostModel model, LocalSearch search) {
+        this.matrix = matrix;
+        this.model = model;
+        this.search = search;
+        size = matrix.size();
+    }
+
+    /**
+     * Adds a tour for the islands to start from, the best one seeds them all
+     */
+    public void addStart(String name, int[] tour) {
+        startNames.add(name);
+        startTours.add(tour);
+    }
+
+    /**
+     * Number of islands, one per core (at least 2) unless set
+     */
+    public void setIslands(int islands) {
+        this.islands = Math.max(1, islands);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Stops after this many epochs even if time is left
+     */
+    public void setMaxEpochs(int maxEpochs) {
+        this.maxEpochs = maxEpochs;
+    }
+
+    /**
+     * Epochs the last solve ran
+     */
+    public int getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * Told about every new best tour, after the epoch that found it
+     */
+    public void setListener(TourListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Runs epochs until millis milliseconds have passed (checked between
+     * epochs) or the epoch limit is reached, and returns the best tour
+     */
+    public PortfolioSolver.Result solve(long millis) {
+        Preprocess.log("---Islands Begin---");
+        long start = System.nanoTime();
+        long deadline = start + millis * 1000000L;
+        if (startTours.isEmpty())
+            addStart("Nearest Neighbors", new NearestNeighborConstructor().construct(matrix));
+        int first = 0;
+        for (int i = 1; i < startTours.size(); i++)
+            if (model.tourCost(startTours.get(i)) < model.tourCost(startTours.get(first)))
+                first = i;
+        PortfolioSolver.Result best = new PortfolioSolver.Result(startTours.get(first).clone(),
+            model.tourCost(startTours.get(first)), startNames.get(first));
+        epochs = 0;
+        if (size < 5) {
+            Preprocess.log("---Islands End---\n");
+            return best;
+        }
+
+        double scale = 0;
+        for (int i = 0; i < size; i++)
+            scale += matrix.get(i, search.neighbor(i, 0));
+        scale /= size;
+        Island[] ring = new Island[islands];
+        for (int i = 0; i < islands; i++) {
+            SplittableRandom random = new SplittableRandom(seed * 1000003L + i);
+            //annealing islands run at staggered temperatures to keep them apart
+            ring[i] = i % 2 == 0 ? new Annealer(random, scale * HOT * (1 + i / 2 % 3))
+                : new Genetic(random);
+            ring[i].seed(startTours, first);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Island island : ring) {
+            tasks.add(() -> {
+                island.epoch();
+                return null;
+            });
+        }
+        int[][] elite = new int[islands][size];
+        double bestLength = matrix.pathLength(best.tour);
+        ForkJoinPool pool = new ForkJoinPool(Math.min(islands, Runtime.getRuntime().availableProcessors()));
+        try {
+            while (epochs < maxEpochs && System.nanoTime() - deadline < 0) {
+                for (Future<Void> done : pool.invokeAll(tasks))
+                    done.get();
+                epochs++;
+                for (int i = 0; i < islands; i++)
+                    ring[i].elite(elite[i]);
+                for (int i = 0; i < islands; i++)
+                    ring[(i + 1) % islands].migrate(elite[i]);
+                int top = 0;
+                for (int i = 1; i < islands; i++)
+                    if (ring[i].bestLength() < ring[top].bestLength())
+                        top = i;
+                if (ring[top].bestLength() < bestLength - 1e-9) {
+                    bestLength = ring[top].bestLength();
+                    int[] tour = elite[top].clone();
+                    String strategy = (top % 2 == 0 ? "Annealing" : "Genetic") + " island " + top;
+                    if (model.tourCost(tour) < best.cost) {
+                        best = new PortfolioSolver.Result(tour, model.tourCost(tour), strategy);
+                        if (listener != null)
+                            listener.improved(tour, best.cost, (System.nanoTime() - start) / 1000000L, strategy);
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Island failed", e);
+        } finally {
+            pool.shutdown();
+        }
+        if (model != matrix && !best.strategy.equals(startNames.get(first))) {
+            int[] polished = new LocalSearch(search).improve(best.tour);
+            if (model.tourCost(polished) < best.cost)
+                best = new PortfolioSolver.Result(polished, model.tourCost(polished), best.strategy + " + Local Search");
+        }
+        Preprocess.log("Best - " + best.cost + " " + model.unit() + " from " + best.strategy + " after " + epochs + " epochs");
+        Preprocess.log("---Islands End---\n");
+        return best;
+    }
+
+    /**
+     * The best tour as Coordinates in visiting order (origin left out),
+     * ready for AssemblyWriter.writeToASM
+     */
+    public Coordinate[] solveOrdering(long millis) {
+        return matrix.toCoordinates(solve(millis).tour);
+    }
+
+    /**
+     * A tour with its positions, changed in place by 2-opt and node
+     * insertion moves whose change in length is known before applying them
+     */
+    private final class Walk {
+        final int[] tour = new int[size];
+        final int[] pos = new int[size];
+        double length;
+
+        void load(int[] from) {
+            System.arraycopy(from, 0, tour, 0, size);
+            for (int i = 0; i < size; i++)
+                pos[tour[i]] = i;
+            length = matrix.pathLength(tour);
+        }
+
+        /**
+         * Proposes a random move towards a candidate neighbour and applies
+         * it if it is shorter, or with the Metropolis probability at temperature
+         */
+        void step(SplittableRandom random, double temperature) {
+            int i = 1 + random.nextInt(size - 1);
+            int a = tour[i];
+            int c = search.neighbor(a, random.nextInt(search.candidates()));
+            int j = pos[c];
+            int kind = random.nextInt(3);
+            if (kind < 2) {
+                //2-opt making tour[lo] and tour[hi] adjacent, by reversing lo+1..hi or lo..hi-1
+                int lo = Math.min(i, j), hi = Math.max(i, j);
+                if (hi - lo < 2 || (kind == 1 && lo == 0))
+                    return;
+                int p = tour[lo], q = tour[hi];
+                double delta;
+                if (kind == 0) {
+                    int b = tour[lo + 1];
+                    delta = matrix.get(p, q) - matrix.get(p, b);
+                    if (hi + 1 < size)
+                        delta += matrix.get(b, tour[hi + 1]) - matrix.get(q, tour[hi + 1]);
+                } else {
+                    int before = tour[lo - 1], b = tour[hi - 1];
+                    delta = matrix.get(before, b) + matrix.get(p, q) - matrix.get(before, p) - matrix.get(b, q);
+                }
+                if (accept(delta, random, temperature))
+                    reverse(lo + 1 - kind, hi - kind, delta);
+            } else {
+                //move a to right after c
+                if (j == i - 1 || j == i)
+                    return;
+                int prev = tour[i - 1];
+                double delta = matrix.get(c, a) - matrix.get(prev, a);
+                if (i + 1 < size)
+                    delta += matrix.get(prev, tour[i + 1]) - matrix.get(a, tour[i + 1]);
+                if (j + 1 < size)
+                    delta += matrix.get(a, tour[j + 1]) - matrix.get(c, tour[j + 1]);
+                if (accept(delta, random, temperature))
+                    move(i, j, delta);
+            }
+        }
+
+        private boolean accept(double delta, SplittableRandom random, double temperature) {
+            return delta < -1e-9 || (temperature > 0 && random.nextDouble() < Math.exp(-delta / temperature));
+        }
+
+        private void reverse(int from, int to, double delta) {
+            for (; from < to; from++, to--) {
+                int t = tour[from];
+                tour[from] = tour[to];
+                tour[to] = t;
+                pos[tour[from]] = from;
+                pos[tour[to]] = to;
+            }
+            length += delta;
+        }
+
+        private void move(int i, int j, double delta) {
+            int a = tour[i];
+            if (j > i) {
+                System.arraycopy(tour, i + 1, tour, i, j - i);
+                tour[j] = a;
+                for (int k = i; k <= j; k++)
+                    pos[tour[k]] = k;
+            } else {
+                System.arraycopy(tour, j + 1, tour, j + 2, i - j - 1);
+                tour[j + 1] = a;
+                for (int k = j + 1; k <= i; k++)
+                    pos[tour[k]] = k;
+            }
+            length += delta;
+        }
+    }
+
+    private abstract class Island {
+        final SplittableRandom random;
+
+        Island(SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * Starts from the tours handed in, first being the best
+         */
+        abstract void seed(List<int[]> starts, int first);
+
+        abstract void epoch();
+
+        abstract double bestLength();
+
+        /**
+         * Copies the island's best tour into out
+         */
+        abstract void elite(int[] out);
+
+        /**
+         * Takes in a neighbouring island's best tour
+         */
+        abstract void migrate(int[] tour);
+    }
+
+    /**
+     * Simulated annealing that cools from its start temperature to a
+     * hundredth of it over each epoch, then carries on from its best tour
+     */
+    private final class Annealer extends Island {
+        private final double hot;
+        private final Walk walk = new Walk();
+        private final int[] best = new int[size];
+        private double bestLength;
+
+        Annealer(SplittableRandom random, double hot) {
+            super(random);
+            this.hot = hot;
+        }
+
+        void seed(List<int[]> starts, int first) {
+            walk.load(starts.get(first));
+            keep();
+        }
+
+        void epoch() {
+            int moves = ANNEAL_MOVES * size;
+            double cooling = Math.pow(0.01, 1.0 / moves);
+            double temperature = hot;
+            for (int m = 0; m < moves; m++, temperature *= cooling) {
+                walk.step(random, temperature);
+                if (walk.length < bestLength - 1e-9)
+                    keep();
+            }
+            walk.load(best);
+            bestLength = walk.length;
+        }
+
+        private void keep() {
+            System.arraycopy(walk.tour, 0, best, 0, size);
+            bestLength = walk.length;
+        }
+
+        double bestLength() {
+            return bestLength;
+        }
+
+        void elite(int[] out) {
+            System.arraycopy(best, 0, out, 0, size);
+        }
+
+        void migrate(int[] tour) {
+            double length = matrix.pathLength(tour);
+            if (length < bestLength - 1e-9) {
+                walk.load(tour);
+                keep();
+            }
+        }
+    }
+
+    /**
+     * Steady state genetic algorithm: two tournament winners are combined
+     * by order crossover, the child is improved by greedy moves and
+     * replaces the worst member if it beats it and is not a duplicate
+     */
+    private final class Genetic extends Island {
+        private final int[][] members;
+        private final double[] lengths;
+        private final Walk child = new Walk();
+        /** Point marks for crossover, stamp avoids clearing them */
+        private final int[] mark = new int[size];
+        private int stamp;
+
+        Genetic(SplittableRandom random) {
+            super(random);
+            members = new int[Math.min(POPULATION, size)][size];
+            lengths = new double[members.length];
+        }
+
+        void seed(List<int[]> starts, int first) {
+            for (int m = 0; m < members.length; m++) {
+                int[] from = starts.get(m == 0 ? first : m % starts.size());
+                child.load(from);
+                //spread the rest out with a burst of hot moves, then a descent
+                if (m > 0) {
+                    for (int s = 0; s < size; s++)
+                        child.step(random, Double.POSITIVE_INFINITY);
+                    improve();
+                }
+                System.arraycopy(child.tour, 0, members[m], 0, size);
+                lengths[m] = child.length;
+            }
+        }
+
+        void epoch() {
+            for (int c = 0; c < CHILDREN; c++) {
+                crossover(members[tournament()], members[tournament()]);
+                improve();
+                offer(child.tour, child.length);
+            }
+        }
+
+        private int tournament() {
+            int a = random.nextInt(members.length), b = random.nextInt(members.length);
+            return lengths[a] <= lengths[b] ? a : b;
+        }
+
+        /**
+         * Order crossover on positions 1..size-1: the child keeps a slice of
+         * first in place and takes the other points in second's order,
+         * starting after the slice
+         */
+        private void crossover(int[] first, int[] second) {
+            int n = size - 1;
+            int from = 1 + random.nextInt(n), to = 1 + random.nextInt(n);
+            if (from > to) {
+                int t = from;
+                from = to;
+                to = t;
+            }
+            stamp++;
+            int[] tour = child.tour;
+            tour[0] = 0;
+            for (int i = from; i <= to; i++) {
+                tour[i] = first[i];
+                mark[first[i]] = stamp;
+            }
+            int at = to % n + 1;
+            for (int k = 0; k < n; k++) {
+                int point = second[(to + k) % n + 1];
+                if (mark[point] == stamp)
+                    continue;
+                tour[at] = point;
+                at = at % n + 1;
+            }
+            child.load(tour);
+        }
+
+        private void improve() {
+            for (int m = 0; m < CHILD_MOVES * size; m++)
+                child.step(random, 0);
+        }
+
+        private void offer(int[] tour, double length) {
+            int worst = 0;
+            for (int m = 0; m < members.length; m++) {
+                if (Math.abs(lengths[m] - length) < 1e-6)
+                    return;
+                if (lengths[m] > lengths[worst])
+                    worst = m;
+            }
+            if (length >= lengths[worst])
+                return;
+            System.arraycopy(tour, 0, members[worst], 0, size);
+            lengths[worst] = length;
+        }
+
+        private int bestMember() {
+            int best = 0;
+            for (int m = 1; m < members.length; m++)
+                if (lengths[m] < lengths[best])
+                    best = m;
+            return best;
+        }
+
+        double bestLength() {
+            return lengths[bestMember()];
+        }
+
+        void elite(int[] out) {
+            System.arraycopy(members[bestMember()], 0, out, 0, size);
+        }
+
+        void migrate(int[] tour) {
+            offer(tour, matrix.pathLength(tour));
+        }
+    }
+}
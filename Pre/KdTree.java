@@ -0,0 +1,141 @@
+/**
+* 2-d tree over the points of a DistanceMatrix that supports removal,
+* so nearest neighbour construction can repeatedly ask for the closest
+* point it has not visited yet in O(log n) instead of rescanning them all
+* The tree is implicit: the node for slot range [lo, hi) is its middle slot
+*/
+public class KdTree {
+    private final int[] xs, ys;
+    /** Point index held by each slot */
+    private final int[] slot;
+    /** Slot holding each point index */
+    private final int[] slotOf;
+    /** Points still present in the subtree rooted at each slot */
+    private final int[] alive;
+    private final boolean[] removed;
+
+    private int best;
+    private long bestDist;
+
+    /**
+     * Indexes points first..size-1 of the matrix
+     */
+    public KdTree(DistanceMatrix matrix, int first) {
+        int size = matrix.size();
+        xs = new int[size];
+        ys = new int[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = matrix.point(i).getX();
+            ys[i] = matrix.point(i).getY();
+        }
+        int count = size - first;
+        slot = new int[count];
+        for (int i = 0; i < count; i++)
+            slot[i] = first + i;
+        slotOf = new int[size];
+        alive = new int[count];
+        removed = new boolean[size];
+        build(0, count, 0);
+        for (int s = 0; s < count; s++)
+            slotOf[slot[s]] = s;
+    }
+
+    private void build(int lo, int hi, int depth) {
+        if (lo >= hi)
+            return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, depth & 1);
+        alive[mid] = hi - lo;
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Quickselect so slot[k] holds the median of slot[lo..hi] along axis
+     */
+    private void select(int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            int pivot = key(slot[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key(slot[i], axis) < pivot)
+                    i++;
+                while (key(slot[j], axis) > pivot)
+                    j--;
+                if (i <= j) {
+                    int t = slot[i];
+                    slot[i++] = slot[j];
+                    slot[j--] = t;
+                }
+            }
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    private int key(int point, int axis) {
+        return axis == 0 ? xs[point] : ys[point];
+    }
+
+    /**
+     * Takes a point out of future nearest queries
+     */
+    public void remove(int point) {
+        if (removed[point])
+            return;
+        removed[point] = true;
+        int target = slotOf[point];
+        int lo = 0, hi = slot.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            alive[mid]--;
+            if (target == mid)
+                return;
+            if (target < mid)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+    }
+
+    /**
+     * Closest remaining point to the given point, or -1 if none remain
+     */
+    public int nearest(int point) {
+        best = -1;
+        bestDist = Long.MAX_VALUE;
+        nearest(xs[point], ys[point], 0, slot.length, 0);
+        return best;
+    }
+
+    private void nearest(int x, int y, int lo, int hi, int depth) {
+        if (lo >= hi)
+            return;
+        int mid = (lo + hi) >>> 1;
+        if (alive[mid] == 0)
+            return;
+        int p = slot[mid];
+        if (!removed[p]) {
+            long dx = xs[p] - x, dy = ys[p] - y;
+            long d = dx * dx + dy * dy;
+            if (d < bestDist) {
+                bestDist = d;
+                best = p;
+            }
+        }
+        long diff = (depth & 1) == 0 ? x - xs[p] : y - ys[p];
+        if (diff < 0) {
+            nearest(x, y, lo, mid, depth + 1);
+            if (diff * diff < bestDist)
+                nearest(x, y, mid + 1, hi, depth + 1);
+        } else {
+            nearest(x, y, mid + 1, hi, depth + 1);
+            if (diff * diff < bestDist)
+                nearest(x, y, lo, mid, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/**
+* Improves a tour with 2-opt and Or-opt moves until no move shortens it
+* The tour is an open path, so position 0 (the origin) never moves and
+* the last destination has no outgoing leg
+* Moves are only tried towards each point's nearest candidates and are
+* scored by their change in length before being applied
+* With a different CostModel, a final descent re-scores the same moves
+* on the model so the tour ends at a local optimum of that model
+*/
+public class LocalSearch {
+    /** How many nearest points each point keeps as move candidates */
+    public static final int CANDIDATES = 8;
+    /** Longest segment Or-opt relocates */
+    private static final int MAX_SEGMENT = 3;
+    private static final double EPSILON = 1e-9;
+
+    private final DistanceMatrix matrix;
+    private final CostModel model;
+    private final int size;
+    private final int k;
+    private final int[] neighbors;
+    private final int[] pos;
+    private final int[] segment = new int[MAX_SEGMENT];
+    private final int[] backup;
+    private int[] tour;
+    private long deadline = Long.MAX_VALUE;
+
+    public LocalSearch(DistanceMatrix matrix) {
+        this(matrix, matrix);
+    }
+
+    public LocalSearch(DistanceMatrix matrix, CostModel model) {
+        this.matrix = matrix;
+        this.model = model;
+        size = matrix.size();
+        k = Math.min(CANDIDATES, size - 1);
+        neighbors = new int[size * k];
+        pos = new int[size];
+        backup = new int[size];
+        for (int i = 0; i < size; i++)
+            fillNeighbors(i);
+    }
+
+    /**
+     * Shares another instance's candidate lists, so several threads can
+     * each run their own search without rebuilding them
+     */
+    public LocalSearch(LocalSearch template) {
+        matrix = template.matrix;
+        model = template.model;
+        size = template.size;
+        k = template.k;
+        neighbors = template.neighbors;
+        pos = new int[size];
+        backup = new int[size];
+        deadline = template.deadline;
+    }
+
+    /**
+     * Stops improve() once System.nanoTime() passes deadline, checked at
+     * every position of a pass, returning the tour as it stands
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns an improved copy of the given tour
+     */
+    public int[] improve(int[] start) {
+        tour = start.clone();
+        for (int i = 0; i < size; i++)
+            pos[tour[i]] = i;
+        boolean improved = true;
+        while (improved && !expired()) {
+            improved = false;
+            while (!expired() && twoOptPass())
+                improved = true;
+            while (!expired() && orOptPass())
+                improved = true;
+        }
+        if (model != matrix)
+            while (!expired() && modelPass());
+        return tour;
+    }
+
+    private boolean expired() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * How many candidates each point keeps
+     */
+    int candidates() {
+        return k;
+    }
+
+    /**
+     * The rank-th nearest point to point, nearest first
+     */
+    int neighbor(int point, int rank) {
+        return neighbors[point * k + rank];
+    }
+
+    /**
+     * Keeps the k nearest other points of a point, nearest first
+     */
+    private void fillNeighbors(int point) {
+        int base = point * k;
+        int count = 0;
+        for (int other = 0; other < size; other++) {
+            if (other == point)
+                continue;
+            double d = matrix.get(point, other);
+            if (count == k && d >= matrix.get(point, neighbors[base + k - 1]))
+                continue;
+            int at = count < k ? count++ : k - 1;
+            while (at > 0 && matrix.get(point, neighbors[base + at - 1]) > d) {
+                neighbors[base + at] = neighbors[base + at - 1];
+                at--;
+            }
+            neighbors[base + at] = other;
+        }
+    }
+
+    /**
+     * Tries every 2-opt reversal suggested by the candidate lists
+     */
+    private boolean twoOptPass() {
+        int last = size - 1;
+        boolean improved = false;
+        for (int i = 1; i < last && !expired(); i++) {
+            int a = tour[i - 1], b = tour[i];
+            //reversing the whole tail only drops the leg into b
+            if (reversalDelta(i, last) < -EPSILON) {
+                reverse(i, last);
+                improved = true;
+                continue;
+            }
+            for (int c = 0; c < k; c++) {
+                int j = pos[neighbors[a * k + c]];
+                if (j > i && reversalDelta(i, j) < -EPSILON) {
+                    reverse(i, j);
+                    improved = true;
+                    break;
+                }
+                j = pos[neighbors[b * k + c]] - 1;
+                if (j > i && reversalDelta(i, j) < -EPSILON) {
+                    reverse(i, j);
+                    improved = true;
+                    break;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Change in length from reversing tour[i..j], 1 <= i < j
+     */
+    private double reversalDelta(int i, int j) {
+        double delta = matrix.get(tour[i - 1], tour[j]) - matrix.get(tour[i - 1], tour[i]);
+        if (j < size - 1)
+            delta += matrix.get(tour[i], tour[j + 1]) - matrix.get(tour[j], tour[j + 1]);
+        return delta;
+    }
+
+    private void reverse(int i, int j) {
+        while (i < j) {
+            int t = tour[i];
+            tour[i] = tour[j];
+            tour[j] = t;
+            pos[tour[i]] = i++;
+            pos[tour[j]] = j--;
+        }
+        if (i == j)
+            pos[tour[i]] = i;
+    }
+
+    /**
+     * Tries relocating every segment of up to MAX_SEGMENT destinations,
+     * in either orientation, next to a candidate of one of its ends
+     */
+    private boolean orOptPass() {
+        int last = size - 1;
+        boolean improved = false;
+        for (int length = 1; length <= MAX_SEGMENT; length++) {
+            for (int i = 1; i + length - 1 <= last && !expired(); i++) {
+                int first = tour[i], end = tour[i + length - 1];
+                double removeGain = matrix.get(tour[i - 1], first);
+                if (i + length <= last)
+                    removeGain += matrix.get(end, tour[i + length]) - matrix.get(tour[i - 1], tour[i + length]);
+                search:
+                for (int c = 0; c < 2 * k; c++) {
+                    int target = c < k ? neighbors[first * k + c] : neighbors[end * k + c - k];
+                    for (int side = 0; side <= 1; side++) {
+                        int p = pos[target] - side;
+                        if (p < 0 || (p >= i - 1 && p <= i + length - 1))
+                            continue;
+                        int u = tour[p];
+                        boolean hasV = p < last;
+                        double base = hasV ? -matrix.get(u, tour[p + 1]) : 0;
+                        for (int flip = 0; flip <= 1; flip++) {
+                            int head = flip == 0 ? first : end;
+                            int tail = flip == 0 ? end : first;
+                            double addCost = base + matrix.get(u, head) + (hasV ? matrix.get(tail, tour[p + 1]) : 0);
+                            if (addCost - removeGain < -EPSILON) {
+                                move(i, length, p, flip == 1);
+                                improved = true;
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves tour[i..i+length-1] to sit after position p
+     */
+    private void move(int i, int length, int p, boolean reversed) {
+        for (int s = 0; s < length; s++)
+            segment[s] = tour[reversed ? i + length - 1 - s : i + s];
+        int from, to;
+        if (p < i) {
+            System.arraycopy(tour, p + 1, tour, p + 1 + length, i - p - 1);
+            System.arraycopy(segment, 0, tour, p + 1, length);
+            from = p + 1;
+            to = i + length - 1;
+        } else {
+            System.arraycopy(tour, i + length, tour, i, p - i - length + 1);
+            System.arraycopy(segment, 0, tour, p - length + 1, length);
+            from = i;
+            to = p;
+        }
+        for (int s = from; s <= to; s++)
+            pos[tour[s]] = s;
+    }
+
+    /**
+     * Tries the candidate 2-opt and Or-opt moves, keeping those that
+     * lower the model's cost of the whole tour
+     */
+    private boolean modelPass() {
+        int last = size - 1;
+        double current = model.tourCost(tour);
+        boolean improved = false;
+        for (int i = 1; i < last && !expired(); i++) {
+            for (int c = 0; c < k; c++) {
+                int j = pos[neighbors[tour[i - 1] * k + c]];
+                if (j <= i)
+                    continue;
+                reverse(i, j);
+                double cost = model.tourCost(tour);
+                if (cost < current - EPSILON) {
+                    current = cost;
+                    improved = true;
+                } else {
+                    reverse(i, j);
+                }
+            }
+        }
+        for (int length = 1; length <= MAX_SEGMENT; length++) {
+            for (int i = 1; i + length - 1 <= last && !expired(); i++) {
+                for (int c = 0; c < k; c++) {
+                    int p = pos[neighbors[tour[i] * k + c]];
+                    if (p >= i - 1 && p <= i + length - 1)
+                        continue;
+                    for (int flip = 0; flip <= 1; flip++) {
+                        System.arraycopy(tour, 0, backup, 0, size);
+                        move(i, length, p, flip == 1);
+                        double cost = model.tourCost(tour);
+                        if (cost < current - EPSILON) {
+                            current = cost;
+                            improved = true;
+                            break;
+                        }
+                        System.arraycopy(backup, 0, tour, 0, size);
+                        for (int s = 0; s < size; s++)
+                            pos[tour[s]] = s;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+* Nearest addition over the destinations (the approach of
+* HamiltonianCycle.getApproximateOptimalForCompleteGraph), then
+* starts the cycle from whichever end is closer to the origin
+* Each destination remembers its closest cycle vertex, Prim style,
+* so the whole construction is O(n^2)
+*/
+public class MagicConstructor implements TourConstructor {
+    public int[] construct(DistanceMatrix matrix) {
+        int size = matrix.size();
+        int[] cycle = new int[size - 1];
+        if (cycle.length == 0)
+            return new int[1];
+        boolean[] added = new boolean[size];
+        double[] nearestDist = new double[size];
+        int[] nearestVertex = new int[size];
+        cycle[0] = 1;
+        added[1] = true;
+        for (int j = 1; j < size; j++) {
+            nearestDist[j] = matrix.get(1, j);
+            nearestVertex[j] = 1;
+        }
+        for (int count = 1; count < cycle.length; count++) {
+            int minVertex = -1;
+            double minWeight = Double.MAX_VALUE;
+            for (int j = 1; j < size; j++) {
+                if (!added[j] && nearestDist[j] < minWeight) {
+                    minWeight = nearestDist[j];
+                    minVertex = j;
+                }
+            }
+            int connectedTo = 0;
+            while (cycle[connectedTo] != nearestVertex[minVertex])
+                connectedTo++;
+            System.arraycopy(cycle, connectedTo, cycle, connectedTo + 1, count - connectedTo);
+            cycle[connectedTo] = minVertex;
+            added[minVertex] = true;
+            for (int j = 1; j < size; j++) {
+                if (!added[j] && matrix.get(minVertex, j) < nearestDist[j]) {
+                    nearestDist[j] = matrix.get(minVertex, j);
+                    nearestVertex[j] = minVertex;
+                }
+            }
+        }
+
+        int[] tour = new int[size];
+        boolean forward = matrix.get(0, cycle[0]) < matrix.get(0, cycle[cycle.length - 1]);
+        for (int i = 0; i < cycle.length; i++)
+            tour[i + 1] = forward ? cycle[i] : cycle[cycle.length - 1 - i];
+        return tour;
+    }
+
+    public String key() {
+        return "magic";
+    }
+
+    public String name() {
+        return "Magic";
+    }
+}
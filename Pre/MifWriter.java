@@ -0,0 +1,161 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* Writes the coordinate table as an Altera memory initialization file in
+* the layout of COS_table.mif, at the address the ASM programs ORG it to
+* If the assembled program (NAME.mif from scasm, next to the ASM file)
+* exists, its words are kept and only the table is replaced, so the image
+* can be loaded as is; otherwise the file holds just the table, for the
+* In-System Memory Content Editor or to merge into an image by hand
+*/
+public class MifWriter {
+    /** SCOMP memory size in words */
+    public static final int DEPTH = 2048;
+    /** Where TABLE_LENGTH sits, the ORG before ;COORDINATE_TABLE_BEGIN, just past the program */
+    public static final int TABLE_ADDRESS = 0x400;
+
+    private static final Pattern RADIX = Pattern.compile("(ADDRESS|DATA)_RADIX\\s*=\\s*(\\w+)\\s*;", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RANGE = Pattern.compile("\\[\\s*(\\w+)\\s*\\.\\.\\s*(\\w+)\\s*\\]\\s*:\\s*(-?\\w+)\\s*;");
+    private static final Pattern WORD = Pattern.compile("(\\w+)\\s*:\\s*(-?\\w+)\\s*;");
+
+    /**
+     * Fails for a table that would run past the end of memory from TABLE_ADDRESS
+     */
+    static void checkFits(int[] table) throws IOException {
+        if (TABLE_ADDRESS + table.length > DEPTH)
+            throw new IOException("The table needs " + table.length + " words, only " + (DEPTH - TABLE_ADDRESS)
+                + " fit at " + String.format("&H%X", TABLE_ADDRESS));
+    }
+
+    /**
+     * Writes the table for toWrite (in the precomputed layout if asked) to
+     * mif, on top of the assembled program if program is an existing file
+     */
+    public static void write(Coordinate[] toWrite, boolean precomputed, File mif, File program) throws IOException {
+        System.out.println("---writeMIF Begin---");
+        int[] table = AssemblyWriter.tableWords(toWrite, precomputed);
+        checkFits(table);
+        int[] image = new int[DEPTH];
+        boolean[] written = new boolean[DEPTH];
+        String source = "table only";
+        if (program != null && program.isFile()) {
+            read(program, image, written);
+            source = "on top of " + program.getName();
+            //drop the old table, however long it was
+            for (int a = TABLE_ADDRESS; a < DEPTH; a++) {
+                image[a] = 0;
+                written[a] = false;
+            }
+        }
+        for (int i = 0; i < table.length; i++) {
+            image[TABLE_ADDRESS + i] = table[i];
+            written[TABLE_ADDRESS + i] = true;
+        }
+
+        Path temp = Files.createTempFile(mif.getAbsoluteFile().toPath().getParent(), mif.getName(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.ISO_8859_1)) {
+                String newline = "\r\n";
+                writer.write("-- Altera Memory Initialization File (MIF)" + newline);
+                writer.write("DEPTH = " + DEPTH + ";" + newline);
+                writer.write("WIDTH = 16;" + newline);
+                writer.write("ADDRESS_RADIX = DEC;" + newline);
+                writer.write("DATA_RADIX = DEC;" + newline);
+                writer.write(newline);
+                writer.write("-- Coordinate table at " + TABLE_ADDRESS + ", " + toWrite.length + " destinations, "
+                    + (precomputed ? 5 : 3) + " words each, " + source + newline);
+                writer.write(newline);
+                writer.write("CONTENT" + newline);
+                writer.write("BEGIN" + newline);
+                for (int start = 0; start < DEPTH; start++) {
+                    if (written[start])
+                        continue;
+                    int end = start;
+                    while (end + 1 < DEPTH && !written[end + 1])
+                        end++;
+                    writer.write("[" + start + ".." + end + "] : 0000;  -- Default to blank data" + newline);
+                    start = end;
+                }
+                for (int address = 0; address < DEPTH; address++)
+                    if (written[address])
+                        writer.write(address + " : " + (short) image[address] + ";" + newline);
+                writer.write("END;");
+            }
+            Files.move(temp, mif.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        System.out.println("Wrote " + mif + " (" + source + ")");
+        System.out.println("---writeMIF End---\n");
+    }
+
+    /**
+     * Reads the CONTENT of an existing MIF (any of the HEX, DEC, UNS, OCT or BIN radixes)
+     */
+    private static void read(File program, int[] image, boolean[] written) throws IOException {
+        int addressRadix = 16, dataRadix = 16;
+        boolean content = false;
+        try (BufferedReader reader = Files.newBufferedReader(program.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.replaceAll("--.*", "").trim();
+                if (!content) {
+                    Matcher radix = RADIX.matcher(line);
+                    if (radix.find()) {
+                        int value = radix(radix.group(2));
+                        if (radix.group(1).equalsIgnoreCase("ADDRESS"))
+                            addressRadix = value;
+                        else
+                            dataRadix = value;
+                    }
+                    content = line.equalsIgnoreCase("BEGIN") || line.toUpperCase().startsWith("CONTENT BEGIN");
+                    continue;
+                }
+                if (line.toUpperCase().startsWith("END"))
+                    break;
+                Matcher range = RANGE.matcher(line);
+                if (range.matches()) {
+                    int value = Integer.parseInt(range.group(3), dataRadix);
+                    for (int a = Integer.parseInt(range.group(1), addressRadix); a <= Integer.parseInt(range.group(2), addressRadix); a++) {
+                        image[a] = value;
+                        written[a] = value != 0;
+                    }
+                    continue;
+                }
+                Matcher word = WORD.matcher(line);
+                if (word.matches()) {
+                    int address = Integer.parseInt(word.group(1), addressRadix);
+                    image[address] = Integer.parseInt(word.group(2), dataRadix);
+                    written[address] = true;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException(program + " is not a " + DEPTH + " word memory initialization file: " + e.getMessage());
+        }
+    }
+
+    private static int radix(String name) throws IOException {
+        switch (name.toUpperCase()) {
+            case "HEX":
+                return 16;
+            case "DEC":
+            case "UNS":
+                return 10;
+            case "OCT":
+                return 8;
+            case "BIN":
+                return 2;
+            default:
+                throw new IOException("Unsupported radix " + name);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+* Splits the destinations between several robots so the last one to
+* finish does so as early as possible (the makespan)
+* Each robot starts from its own pose (x, y in feet, heading in degrees
+* counterclockwise from the field's x axis), given as starts=X:Y:H,X:Y:H
+* Destinations are first dealt out by makespan-aware cheapest insertion,
+* then every route is planned by Preprocess.plan in parallel and the
+* longest route gives destinations away (relocate) or trades them (swap)
+* until that no longer shortens it; planning and exchanging repeat while
+* the makespan keeps falling
+* The robot's odometry starts at (0, 0) facing 0, so each route is
+* planned and written in its own robot's frame
+* Route lengths for the exchange are path lengths on the shared matrix,
+* which also carries any routed obstacle legs
+*/
+public class MultiRobotPlanner {
+    /** Plan-and-exchange rounds before settling for the best so far */
+    public static final int MAX_ROUNDS = 8;
+    private static final double EPSILON = 1e-9;
+
+    /** Start r is point r, destination i is point robots + i */
+    private final DistanceMatrix matrix;
+    private final int robots;
+    private final Coordinate[] starts;
+    private final double[] headings;
+    private int[][] routes;
+    private final String[] strategies;
+    /** Nearest points of each point on the shared matrix, built on first use */
+    private LocalSearch candidates;
+    /** Legs of the shared matrix routed around obstacles, null without any */
+    private ObstacleLegs legs;
+
+    public MultiRobotPlanner(Coordinate[] starts, double[] headings, Coordinate[] coords, DistanceKernel.Metric metric) {
+        robots = starts.length;
+        this.starts = starts;
+        this.headings = headings;
+        Coordinate[] points = new Coordinate[robots - 1 + coords.length];
+        System.arraycopy(starts, 1, points, 0, robots - 1);
+        System.arraycopy(coords, 0, points, robots - 1, coords.length);
+        matrix = new DistanceMatrix(starts[0], points, metric);
+        strategies = new String[robots];
+    }
+
+    /**
+     * The shared matrix, e.g. to route obstacle legs before solve
+     */
+    public DistanceMatrix getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * The obstacle legs routed on the shared matrix, to carry into each route's matrix
+     */
+    public void setLegs(ObstacleLegs legs) {
+        this.legs = legs;
+    }
+
+    /**
+     * Partitions and plans; args are Preprocess args, used for each route
+     */
+    public int[][] solve(String[] args) {
+        for (String arg : args) {
+            //every route must keep all of its destinations for the exchange to work
+            if (arg.startsWith("budget=") || arg.equals("simulate") || arg.equals("mif") || arg.startsWith("mif="))
+                throw new IllegalArgumentException(arg + " is not supported with more than one robot");
+        }
+        routes = partition();
+        Preprocess.log(String.format("Initial Makespan - %.2f", makespan(routes)));
+        int[][] best = null;
+        double bestMakespan = Double.MAX_VALUE;
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            planRoutes(args);
+            double planned = makespan(routes);
+            if (planned < bestMakespan - EPSILON) {
+                bestMakespan = planned;
+                best = copy(routes);
+            }
+            int moves = exchange();
+            Preprocess.log(String.format("Round %d - makespan %.2f planned, %.2f after %d exchanges",
+                round + 1, planned, makespan(routes), moves));
+            if (moves == 0)
+                break;
+        }
+        routes = best;
+        return copy(routes);
+    }
+
+    /**
+     * Makespan of the last solve, in robot units
+     */
+    public double getMakespan() {
+        return makespan(routes);
+    }
+
+    /**
+     * Path length of one route on the shared matrix
+     */
+    public double routeLength(int robot) {
+        return matrix.pathLength(routes[robot]);
+    }
+
+    /**
+     * The Coordinates robot visits in its own frame, with obstacle
+     * waypoints (if legs is not null) expanded
+     */
+    public Coordinate[] toCoordinates(int robot, ObstacleLegs legs) {
+        Coordinate[] field = legs == null ? matrix.toCoordinates(routes[robot]) : legs.expand(matrix, routes[robot]);
+        Coordinate[] out = new Coordinate[field.length];
+        for (int i = 0; i < field.length; i++)
+            out[i] = toRobotFrame(robot, field[i]);
+        return out;
+    }
+
+    /**
+     * Deals destinations out, furthest from every start first, each to
+     * the route and position that leaves the longest route shortest
+     */
+    private int[][] partition() {
+        int size = matrix.size();
+        Integer[] order = new Integer[size - robots];
+        double[] nearestStart = new double[size];
+        for (int i = robots; i < size; i++) {
+            order[i - robots] = i;
+            nearestStart[i] = Double.MAX_VALUE;
+            for (int r = 0; r < robots; r++)
+                nearestStart[i] = Math.min(nearestStart[i], matrix.get(r, i));
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(nearestStart[b], nearestStart[a]));
+
+        List<List<Integer>> lists = new ArrayList<>();
+        double[] length = new double[robots];
+        for (int r = 0; r < robots; r++) {
+            lists.add(new ArrayList<>());
+            lists.get(r).add(r);
+        }
+        for (int point : order) {
+            int bestRoute = -1, bestAt = -1;
+            double bestSpan = Double.MAX_VALUE, bestDelta = Double.MAX_VALUE;
+            for (int r = 0; r < robots; r++) {
+                List<Integer> route = lists.get(r);
+                for (int at = 1; at <= route.size(); at++) {
+                    double delta = matrix.get(route.get(at - 1), point);
+                    if (at < route.size())
+                        delta += matrix.get(point, route.get(at)) - matrix.get(route.get(at - 1), route.get(at));
+                    double span = length[r] + delta;
+                    if (span < bestSpan - EPSILON || (span < bestSpan + EPSILON && delta < bestDelta)) {
+                        bestSpan = span;
+                        bestDelta = delta;
+                        bestRoute = r;
+                        bestAt = at;
+                    }
+                }
+            }
+            lists.get(bestRoute).add(bestAt, point);
+            length[bestRoute] += bestDelta;
+        }
+        int[][] out = new int[robots][];
+        for (int r = 0; r < robots; r++)
+            out[r] = lists.get(r).stream().mapToInt(Integer::intValue).toArray();
+        return out;
+    }
+
+    /**
+     * Plans every route on its own matrix, all at once
+     */
+    private void planRoutes(String[] args) {
+        boolean wasVerbose = Preprocess.verbose;
+        Preprocess.verbose = false;
+        try {
+            IntStream.range(0, robots).parallel().forEach(r -> {
+                if (routes[r].length <= 2) {
+                    strategies[r] = "Trivial";
+                    return;
+                }
+                DistanceMatrix sub = subMatrix(r);
+                Preprocess p = new Preprocess();
+                int[] tour = p.plan(sub, args);
+                int[] planned = new int[tour.length];
+                for (int i = 0; i < tour.length; i++)
+                    planned[i] = routes[r][tour[i]];
+                //a path length plan never makes the route longer; a time plan is trusted as is
+                if (matrix.pathLength(planned) <= matrix.pathLength(routes[r]) + EPSILON || p.model != sub)
+                    routes[r] = planned;
+                strategies[r] = p.strategy;
+            });
+        } finally {
+            Preprocess.verbose = wasVerbose;
+        }
+    }
+
+    /**
+     * Route r's points in robot r's frame, with the legs of the shared
+     * matrix that were routed around obstacles
+     */
+    private DistanceMatrix subMatrix(int r) {
+        int[] route = routes[r];
+        Coordinate[] coords = new Coordinate[route.length - 1];
+        for (int i = 1; i < route.length; i++)
+            coords[i - 1] = toRobotFrame(r, matrix.point(route[i]));
+        DistanceMatrix sub = new DistanceMatrix(new Coordinate(0, 0), coords, matrix.metric());
+        if (legs != null) {
+            for (int i = 0; i < route.length; i++)
+                for (int j = i + 1; j < route.length; j++)
+                    if (legs.routed(route[i], route[j]))
+                        sub.setLeg(i, j, matrix.get(route[i], route[j]));
+        }
+        return sub;
+    }
+
+    /**
+     * Applies the best relocate or in-place swap between the longest route
+     * and any other until none shortens the longer of the two; returns how many
+     * Like LocalSearch, a point is only moved next to, or swapped with, one
+     * of its nearest candidates, and moves are scored by their change in length
+     */
+    private int exchange() {
+        if (candidates == null)
+            candidates = new LocalSearch(matrix);
+        int size = matrix.size();
+        int[] routeOf = new int[size], posOf = new int[size];
+        double[] length = new double[robots];
+        int moves = 0;
+        while (true) {
+            int longest = 0;
+            for (int r = 0; r < robots; r++) {
+                length[r] = matrix.pathLength(routes[r]);
+                if (length[r] > length[longest])
+                    longest = r;
+                for (int i = 0; i < routes[r].length; i++) {
+                    routeOf[routes[r][i]] = r;
+                    posOf[routes[r][i]] = i;
+                }
+            }
+            int[] from = routes[longest];
+            double bestSpan = length[longest] - EPSILON;
+            int bestOther = -1, bestI = -1, bestJ = -1;
+            boolean bestSwap = false;
+            for (int i = 1; i < from.length; i++) {
+                int point = from[i];
+                double removed = length[longest] - removalGain(from, i);
+                for (int c = 0; c < candidates.candidates(); c++) {
+                    int near = candidates.neighbor(point, c);
+                    int other = routeOf[near];
+                    if (other == longest)
+                        continue;
+                    int[] to = routes[other];
+                    //relocate next to near, on either side of it
+                    if (removed < bestSpan) {
+                        for (int at = Math.max(1, posOf[near]); at <= posOf[near] + 1; at++) {
+                            double span = Math.max(removed, length[other] + insertionCost(to, at, point));
+                            if (span < bestSpan) {
+                                bestSpan = span;
+                                bestOther = other;
+                                bestI = i;
+                                bestJ = at;
+                                bestSwap = false;
+                            }
+                        }
+                    }
+                    //or trade places with it
+                    if (near < robots)
+                        continue;
+                    double given = length[longest] + replacementCost(from, i, near);
+                    if (given >= bestSpan)
+                        continue;
+                    double span = Math.max(given, length[other] + replacementCost(to, posOf[near], point));
+                    if (span < bestSpan) {
+                        bestSpan = span;
+                        bestOther = other;
+                        bestI = i;
+                        bestJ = posOf[near];
+                        bestSwap = true;
+                    }
+                }
+            }
+            if (bestOther < 0)
+                return moves;
+            int[] to = routes[bestOther];
+            if (bestSwap) {
+                int point = from[bestI];
+                from[bestI] = to[bestJ];
+                to[bestJ] = point;
+            } else {
+                routes[bestOther] = with(to, bestJ, from[bestI]);
+                routes[longest] = without(from, bestI);
+            }
+            moves++;
+        }
+    }
+
+    /**
+     * How much shorter the route gets without route[at]
+     */
+    private double removalGain(int[] route, int at) {
+        double gain = matrix.get(route[at - 1], route[at]);
+        if (at < route.length - 1)
+            gain += matrix.get(route[at], route[at + 1]) - matrix.get(route[at - 1], route[at + 1]);
+        return gain;
+    }
+
+    /**
+     * How much longer the route gets with point inserted before position at
+     */
+    private double insertionCost(int[] route, int at, int point) {
+        double cost = matrix.get(route[at - 1], point);
+        if (at < route.length)
+            cost += matrix.get(point, route[at]) - matrix.get(route[at - 1], route[at]);
+        return cost;
+    }
+
+    /**
+     * Change in length when route[at] is replaced by point
+     */
+    private double replacementCost(int[] route, int at, int point) {
+        double cost = matrix.get(route[at - 1], point) - matrix.get(route[at - 1], route[at]);
+        if (at < route.length - 1)
+            cost += matrix.get(point, route[at + 1]) - matrix.get(route[at], route[at + 1]);
+        return cost;
+    }
+
+    private static int[] without(int[] route, int at) {
+        int[] out = new int[route.length - 1];
+        System.arraycopy(route, 0, out, 0, at);
+        System.arraycopy(route, at + 1, out, at, route.length - at - 1);
+        return out;
+    }
+
+    private static int[] with(int[] route, int at, int point) {
+        int[] out = new int[route.length + 1];
+        System.arraycopy(route, 0, out, 0, at);
+        out[at] = point;
+        System.arraycopy(route, at, out, at + 1, route.length - at);
+        return out;
+    }
+
+    private double makespan(int[][] routes) {
+        double span = 0;
+        for (int[] route : routes)
+            span = Math.max(span, matrix.pathLength(route));
+        return span;
+    }
+
+    private static int[][] copy(int[][] routes) {
+        int[][] out = new int[routes.length][];
+        for (int r = 0; r < routes.length; r++)
+            out[r] = routes[r].clone();
+        return out;
+    }
+
+    /**
+     * A field Coordinate as robot r's odometry sees it
+     */
+    private Coordinate toRobotFrame(int r, Coordinate c) {
+        double dx = c.getX() - starts[r].getX(), dy = c.getY() - starts[r].getY();
+        double h = Math.toRadians(headings[r]);
+        Coordinate out = new Coordinate((int) Math.round(dx * Math.cos(h) + dy * Math.sin(h)),
+            (int) Math.round(-dx * Math.sin(h) + dy * Math.cos(h)));
+        out.setNumber(c.getNumber());
+        out.setScore(c.getScore());
+        return out;
+    }
+
+    /**
+     * Number of robots from robots=K, or the number of starts=... poses, 1 if neither
+     */
+    public static int robotsArg(String[] args) {
+        String[] poses = startsArg(args);
+        int robots = (int) Preprocess.numberArg(args, "robots", poses == null ? 1 : poses.length);
+        if (poses != null && poses.length != robots)
+            throw new IllegalArgumentException("robots=" + robots + " but " + poses.length + " starts given");
+        return robots;
+    }
+
+    private static String[] startsArg(String[] args) {
+        for (String arg : args)
+            if (arg.startsWith("starts="))
+                return arg.substring("starts=".length()).split(",");
+        return null;
+    }
+
+    /**
+     * Plans the destinations for robotsArg(args) robots and patches one ASM file each
+     */
+    public static void run(Coordinate[] coords, String[] args) throws IOException {
+        int robots = robotsArg(args);
+        String[] poses = startsArg(args);
+        Coordinate[] starts = new Coordinate[robots];
+        double[] headings = new double[robots];
+        for (int r = 0; r < robots; r++) {
+            starts[r] = new Coordinate(0, 0);
+            if (poses != null) {
+                String[] pose = poses[r].split(":");
+                starts[r] = new Coordinate(AssemblyWriter.toRobotUnits(Double.parseDouble(pose[0])),
+                    AssemblyWriter.toRobotUnits(Double.parseDouble(pose[1])));
+                headings[r] = pose.length > 2 ? Double.parseDouble(pose[2]) : 0;
+            }
+        }
+
+        MultiRobotPlanner planner = Metrics.time("distanceMatrix",
+            () -> new MultiRobotPlanner(starts, headings, coords, DistanceKernel.metricArg(args)));
+        File obstacles = ObstacleLegs.obstaclesArg(args);
+        ObstacleLegs legs = obstacles == null ? null : Metrics.time("obstacles",
+            () -> ObstacleLegs.apply(ObstacleMap.load(obstacles), planner.getMatrix(),
+                new File(new File("").getAbsoluteFile().getParent() + "/Pre/.legcache")));
+        if (legs != null)
+            planner.setLegs(legs);
+        System.out.println("---Multi Robot Begin---");
+        Metrics.run("multiRobot", () -> planner.solve(args));
+        Coordinate[][] tables = new Coordinate[robots][];
+        for (int r = 0; r < robots; r++) {
+            tables[r] = planner.toCoordinates(r, legs);
+            System.out.printf("Robot %d - %d destinations, %.2f robot units (%s)\n",
+                r + 1, planner.routes[r].length - 1, planner.routeLength(r), planner.strategies[r]);
+        }
+        System.out.printf("Makespan - %.2f robot units\n", planner.getMakespan());
+        System.out.println("---Multi Robot End---\n");
+
+        Metrics.run("writeToASM", () -> AssemblyWriter.writeToASM(tables, Arrays.asList(args).contains("precompute"), Preprocess.asmTargets(args)));
+    }
+}
@@ -0,0 +1,57 @@
+/**
+* Uses the nearest neighbor approximation, looking up
+* the closest unvisited destination in a KdTree
+* (or the matrix, when obstacles bend some legs or the metric is not
+* the straight-line distance the tree ranks by)
+*/
+public class NearestNeighborConstructor implements TourConstructor {
+    public int[] construct(DistanceMatrix matrix) {
+        return nearestFrom(matrix, 0);
+    }
+
+    /**
+     * Nearest neighbor that goes to destination first before anything
+     * else, or a plain nearest neighbor tour for first 0
+     */
+    static int[] nearestFrom(DistanceMatrix matrix, int first) {
+        int size = matrix.size();
+        int[] tour = new int[size];
+        int step = 1;
+        if (first > 0)
+            tour[step++] = first;
+        if (matrix.hasDetours() || matrix.metric() != DistanceKernel.Metric.EUCLIDEAN) {
+            //the tree would rank by straight lines, so scan the matrix instead
+            boolean[] visited = new boolean[size];
+            visited[first] = true;
+            for (; step < size; step++) {
+                int nearest = -1;
+                for (int j = 1; j < size; j++)
+                    if (!visited[j] && (nearest == -1 || matrix.get(tour[step - 1], j) < matrix.get(tour[step - 1], nearest)))
+                        nearest = j;
+                tour[step] = nearest;
+                visited[nearest] = true;
+            }
+        } else {
+            KdTree tree = new KdTree(matrix, 1);
+            if (first > 0)
+                tree.remove(first);
+            for (; step < size; step++) {
+                tour[step] = tree.nearest(tour[step - 1]);
+                tree.remove(tour[step]);
+            }
+        }
+        return tour;
+    }
+
+    public String key() {
+        return "nn";
+    }
+
+    public String name() {
+        return "Nearest Neighbors";
+    }
+
+    public String phase() {
+        return "nearestNeighbor";
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+* Shortest legs between the points of a DistanceMatrix around an ObstacleMap
+* A leg whose straight line is clear keeps its matrix distance; a blocked
+* one is routed over the visibility graph of the map's corner waypoints
+* Every source point runs its own Dijkstra, spread over the cores
+* Results are cached on disk keyed by the map hash, the metric and the
+* points, so the same field and map are only routed once
+*/
+public class ObstacleLegs {
+    /** Bump whenever the routing could produce different legs */
+    public static final int VERSION = 2;
+
+    private final int size;
+    private final int waypoints;
+    private final int[] wx, wy;
+    /** Blocked legs as from * size + to, with their routed cost */
+    private int[] blockedLeg = new int[0];
+    private double[] blockedCost = new double[0];
+    /** Last waypoint before the destination of each blocked leg, -1 if unreachable */
+    private int[] blockedVia = new int[0];
+    /** pred[from][w]: waypoint before w on the way from point from, -1 for from itself */
+    private int[][] pred;
+
+    private ObstacleLegs(ObstacleMap map, int size) {
+        this.size = size;
+        waypoints = map.waypoints();
+        wx = new int[waypoints];
+        wy = new int[waypoints];
+        for (int w = 0; w < waypoints; w++) {
+            wx[w] = map.waypointX(w);
+            wy[w] = map.waypointY(w);
+        }
+    }
+
+    /**
+     * Routes every blocked leg of the matrix around the map, reading and
+     * writing cacheDir (null for no cache), and writes the routed costs into the matrix
+     * Fails if some leg has no way around the obstacles at all
+     */
+    public static ObstacleLegs apply(ObstacleMap map, DistanceMatrix matrix, File cacheDir) {
+        ObstacleLegs legs = new ObstacleLegs(map, matrix.size());
+        File file = cacheDir == null ? null : new File(cacheDir, legs.key(map, matrix) + ".legs");
+        if (file == null || !legs.read(file)) {
+            legs.route(map, matrix);
+            if (file != null) {
+                try {
+                    legs.write(file);
+                } catch (IOException e) {
+                    Preprocess.log("Could not cache obstacle legs: " + e);
+                }
+            }
+        } else {
+            Preprocess.log("Obstacle legs cache hit " + file.getName());
+        }
+        int unreachable = 0, example = -1;
+        for (int k = 0; k < legs.blockedLeg.length; k++) {
+            if (legs.blockedVia[k] < 0) {
+                unreachable++;
+                example = legs.blockedLeg[k];
+            }
+        }
+        if (unreachable > 0)
+            throw new IllegalArgumentException(unreachable + " legs have no way around the obstacles, e.g. #"
+                + matrix.point(example / legs.size).getNumber() + " to #" + matrix.point(example % legs.size).getNumber());
+        for (int k = 0; k < legs.blockedLeg.length; k++)
+            matrix.setLeg(legs.blockedLeg[k] / legs.size, legs.blockedLeg[k] % legs.size, legs.blockedCost[k]);
+        Preprocess.log(legs.blockedLeg.length + " legs blocked, routed through " + legs.waypoints + " waypoints");
+        return legs;
+    }
+
+    /**
+     * The Coordinates a tour visits (starting origin left out, like
+     * DistanceMatrix.toCoordinates) with the waypoints of each blocked leg
+     * in between, numbered 0 so the robot does not report them
+     */
+    public Coordinate[] expand(DistanceMatrix matrix, int[] tour) {
+        List<Coordinate> out = new ArrayList<>();
+        List<Coordinate> detour = new ArrayList<>();
+        for (int i = 1; i < tour.length; i++) {
+            int k = Arrays.binarySearch(blockedLeg, tour[i - 1] * size + tour[i]);
+            if (k >= 0) {
+                detour.clear();
+                for (int w = blockedVia[k]; w >= 0; w = pred[tour[i - 1]][w])
+                    detour.add(new Coordinate(wx[w], wy[w]));
+                for (int d = detour.size() - 1; d >= 0; d--)
+                    out.add(detour.get(d));
+            }
+            out.add(matrix.point(tour[i]));
+        }
+        return out.toArray(new Coordinate[0]);
+    }
+
+    /**
+     * Number of legs whose straight line crosses an obstacle
+     */
+    public int blocked() {
+        return blockedLeg.length;
+    }
+
+    /**
+     * Whether the leg between two points of the matrix is routed around obstacles
+     */
+    public boolean routed(int from, int to) {
+        return Arrays.binarySearch(blockedLeg, from * size + to) >= 0;
+    }
+
+    private void route(ObstacleMap map, DistanceMatrix matrix) {
+        DistanceKernel.Metric metric = matrix.metric();
+        int[] px = new int[size], py = new int[size];
+        for (int i = 0; i < size; i++) {
+            px[i] = matrix.point(i).getX();
+            py[i] = matrix.point(i).getY();
+        }
+        //waypoint to waypoint edges, and which waypoints each point can see
+        double[][] edge = new double[waypoints][waypoints];
+        IntStream.range(0, waypoints).parallel().forEach(a -> {
+            for (int b = 0; b < waypoints; b++)
+                edge[a][b] = a == b || map.blocked(wx[a], wy[a], wx[b], wy[b])
+                    ? Double.POSITIVE_INFINITY : length(wx[b] - wx[a], wy[b] - wy[a], metric);
+        });
+        double[][] sees = new double[size][waypoints];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            for (int w = 0; w < waypoints; w++)
+                sees[i][w] = map.blocked(px[i], py[i], wx[w], wy[w])
+                    ? Double.POSITIVE_INFINITY : length(wx[w] - px[i], wy[w] - py[i], metric);
+        });
+
+        pred = new int[size][];
+        int[][] rowLegs = new int[size][];
+        double[][] rowCosts = new double[size][];
+        int[][] rowVia = new int[size][];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            int[] to = new int[size];
+            int count = 0;
+            for (int j = 0; j < size; j++)
+                if (j != i && map.blocked(px[i], py[i], px[j], py[j]))
+                    to[count++] = j;
+            rowLegs[i] = new int[count];
+            rowCosts[i] = new double[count];
+            rowVia[i] = new int[count];
+            if (count == 0) {
+                pred[i] = new int[0];
+                return;
+            }
+            double[] reach = new double[waypoints];
+            pred[i] = dijkstra(sees[i], edge, reach);
+            for (int c = 0; c < count; c++) {
+                int j = to[c];
+                double best = Double.POSITIVE_INFINITY;
+                int via = -1;
+                for (int w = 0; w < waypoints; w++) {
+                    double d = reach[w] + sees[j][w];
+                    if (d < best) {
+                        best = d;
+                        via = w;
+                    }
+                }
+                rowLegs[i][c] = i * size + j;
+                rowCosts[i][c] = best;
+                rowVia[i][c] = via;
+            }
+        });
+        int total = 0;
+        for (int i = 0; i < size; i++)
+            total += rowLegs[i].length;
+        blockedLeg = new int[total];
+        blockedCost = new double[total];
+        blockedVia = new int[total];
+        for (int i = 0, k = 0; i < size; k += rowLegs[i].length, i++) {
+            System.arraycopy(rowLegs[i], 0, blockedLeg, k, rowLegs[i].length);
+            System.arraycopy(rowCosts[i], 0, blockedCost, k, rowLegs[i].length);
+            System.arraycopy(rowVia[i], 0, blockedVia, k, rowLegs[i].length);
+        }
+    }
+
+    /**
+     * Dense Dijkstra over the waypoints from a point that reaches each
+     * directly at cost start[w]; fills reach and returns the predecessors
+     */
+    private int[] dijkstra(double[] start, double[][] edge, double[] reach) {
+        int[] before = new int[waypoints];
+        boolean[] done = new boolean[waypoints];
+        System.arraycopy(start, 0, reach, 0, waypoints);
+        Arrays.fill(before, -1);
+        for (int round = 0; round < waypoints; round++) {
+            int next = -1;
+            for (int w = 0; w < waypoints; w++)
+                if (!done[w] && (next == -1 || reach[w] < reach[next]))
+                    next = w;
+            if (reach[next] == Double.POSITIVE_INFINITY)
+                break;
+            done[next] = true;
+            for (int w = 0; w < waypoints; w++) {
+                double d = reach[next] + edge[next][w];
+                if (d < reach[w]) {
+                    reach[w] = d;
+                    before[w] = next;
+                }
+            }
+        }
+        return before;
+    }
+
+    private static double length(int dx, int dy, DistanceKernel.Metric metric) {
+        return metric == DistanceKernel.Metric.ROBOT ? DistanceKernel.robot(dx, dy) : Math.sqrt((double) dx * dx + (double) dy * dy);
+    }
+
+    private String key(ObstacleMap map, DistanceMatrix matrix) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((map.hash() + " " + matrix.metric() + " " + VERSION).getBytes(StandardCharsets.UTF_8));
+        byte[] buf = new byte[8];
+        for (int i = 0; i < size; i++) {
+            long packed = ((long) matrix.point(i).getX() << 32) | (matrix.point(i).getY() & 0xffffffffL);
+            for (int b = 0; b < 8; b++)
+                buf[b] = (byte) (packed >>> (56 - 8 * b));
+            digest.update(buf);
+        }
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest())
+            name.append(String.format("%02x", b));
+        return name.toString();
+    }
+
+    private boolean read(File file) {
+        if (!file.isFile())
+            return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION || in.readInt() != size || in.readInt() != waypoints)
+                return false;
+            int count = in.readInt();
+            int[] legs = new int[count], via = new int[count];
+            double[] costs = new double[count];
+            for (int k = 0; k < count; k++) {
+                legs[k] = in.readInt();
+                costs[k] = in.readDouble();
+                via[k] = in.readInt();
+            }
+            int[][] before = new int[size][];
+            for (int i = 0; i < size; i++) {
+                before[i] = new int[in.readInt()];
+                for (int w = 0; w < before[i].length; w++)
+                    before[i][w] = in.readInt();
+            }
+            blockedLeg = legs;
+            blockedCost = costs;
+            blockedVia = via;
+            pred = before;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Preprocess.log("Ignoring unreadable obstacle legs " + file.getName() + ": " + e);
+            return false;
+        }
+    }
+
+    private void write(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                out.writeInt(waypoints);
+                out.writeInt(blockedLeg.length);
+                for (int k = 0; k < blockedLeg.length; k++) {
+                    out.writeInt(blockedLeg[k]);
+                    out.writeDouble(blockedCost[k]);
+                    out.writeInt(blockedVia[k]);
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(pred[i].length);
+                    for (int w : pred[i])
+                        out.writeInt(w);
+                }
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads an obstacles=FILE argument, null if absent
+     */
+    public static File obstaclesArg(String[] args) {
+        for (String arg : args)
+            if (arg.startsWith("obstacles="))
+                return new File(arg.substring("obstacles=".length()));
+        return null;
+    }
+}
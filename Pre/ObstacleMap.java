@@ -0,0 +1,284 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Walls and obstacles on the course, as polygons in robot units
+* Read from a text file in feet, one entry per line (# starts a comment):
+*   polygon X1 Y1 X2 Y2 X3 Y3 ...
+*   grid CELL X0 Y0      followed by rows of '.' (free) and '#' (blocked),
+*                        the first row is the one furthest up in y
+* Blocked grid cells are merged into one rectangle per horizontal run
+* The robot can pass each convex corner at CLEARANCE; those passing
+* points are the waypoints ObstacleLegs routes blocked legs through
+* A leg is blocked if it comes closer than CLEARANCE to an obstacle
+* (or than its own ends already are, for destinations next to a wall)
+*/
+public class ObstacleMap {
+    /** How far from an obstacle corner the robot is routed, about its radius plus margin */
+    public static final int CLEARANCE = 250;
+    /** Rounding allowance, so a leg between two waypoints CLEARANCE off the same edge stays clear */
+    private static final int SLACK = 2;
+
+    /** polygon k has vertices polygonX[k][i], polygonY[k][i] */
+    private final List<int[]> polygonX = new ArrayList<>();
+    private final List<int[]> polygonY = new ArrayList<>();
+    private final int[] waypointX, waypointY;
+    private final String hash;
+
+    private ObstacleMap(String hash, List<int[]> xs, List<int[]> ys) {
+        this.hash = hash;
+        polygonX.addAll(xs);
+        polygonY.addAll(ys);
+        List<int[]> waypoints = new ArrayList<>();
+        for (int k = 0; k < polygonX.size(); k++)
+            addCorners(k, waypoints);
+        waypointX = new int[waypoints.size()];
+        waypointY = new int[waypoints.size()];
+        for (int i = 0; i < waypoints.size(); i++) {
+            waypointX[i] = waypoints.get(i)[0];
+            waypointY[i] = waypoints.get(i)[1];
+        }
+    }
+
+    /**
+     * Reads a map file; its SHA-256 becomes hash() for caching
+     */
+    public static ObstacleMap load(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        List<int[]> xs = new ArrayList<>(), ys = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] words = line.replaceAll("#.*", "").trim().split("\\s+");
+                if (words[0].isEmpty())
+                    continue;
+                try {
+                    if (words[0].equals("polygon")) {
+                        if (words.length < 7 || words.length % 2 == 0)
+                            throw new IOException("a polygon needs at least three X Y pairs");
+                        int n = (words.length - 1) / 2;
+                        int[] px = new int[n], py = new int[n];
+                        for (int i = 0; i < n; i++) {
+                            px[i] = AssemblyWriter.toRobotUnits(Double.parseDouble(words[1 + 2 * i]));
+                            py[i] = AssemblyWriter.toRobotUnits(Double.parseDouble(words[2 + 2 * i]));
+                        }
+                        xs.add(px);
+                        ys.add(py);
+                    } else if (words[0].equals("grid") && words.length == 4) {
+                        lineNumber += readGrid(reader, Double.parseDouble(words[1]), Double.parseDouble(words[2]),
+                            Double.parseDouble(words[3]), xs, ys);
+                    } else {
+                        throw new IOException("expected 'polygon X1 Y1 ...' or 'grid CELL X0 Y0'");
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(file.getName() + ":" + lineNumber + ": bad number " + e.getMessage());
+                } catch (IOException e) {
+                    throw new IOException(file.getName() + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(content);
+        digest.update(("clearance " + CLEARANCE + " slack " + SLACK).getBytes(StandardCharsets.UTF_8));
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest())
+            hash.append(String.format("%02x", b));
+        return new ObstacleMap(hash.toString(), xs, ys);
+    }
+
+    /**
+     * Reads grid rows up to the first line that is not one, returns how many were read
+     */
+    private static int readGrid(BufferedReader reader, double cell, double x0, double y0, List<int[]> xs, List<int[]> ys) throws IOException {
+        List<String> rows = new ArrayList<>();
+        reader.mark(1 << 16);
+        String line;
+        while ((line = reader.readLine()) != null && !line.trim().isEmpty() && line.trim().matches("[.#]+")) {
+            rows.add(line.trim());
+            reader.mark(1 << 16);
+        }
+        reader.reset();
+        for (int r = 0; r < rows.size(); r++) {
+            String row = rows.get(r);
+            double bottom = y0 + (rows.size() - 1 - r) * cell;
+            for (int c = 0; c < row.length(); c++) {
+                if (row.charAt(c) != '#')
+                    continue;
+                int end = c;
+                while (end + 1 < row.length() && row.charAt(end + 1) == '#')
+                    end++;
+                int left = AssemblyWriter.toRobotUnits(x0 + c * cell), right = AssemblyWriter.toRobotUnits(x0 + (end + 1) * cell);
+                int low = AssemblyWriter.toRobotUnits(bottom), high = AssemblyWriter.toRobotUnits(bottom + cell);
+                xs.add(new int[] {left, right, right, left});
+                ys.add(new int[] {low, low, high, high});
+                c = end;
+            }
+        }
+        return rows.size();
+    }
+
+    public String hash() {
+        return hash;
+    }
+
+    public int waypoints() {
+        return waypointX.length;
+    }
+
+    public int waypointX(int i) {
+        return waypointX[i];
+    }
+
+    public int waypointY(int i) {
+        return waypointY[i];
+    }
+
+    /**
+     * Whether the straight segment between two points crosses an obstacle
+     * or passes closer to one than CLEARANCE (or than either end is)
+     */
+    public boolean blocked(int ax, int ay, int bx, int by) {
+        double required = Math.min(CLEARANCE, Math.min(clearance(ax, ay), clearance(bx, by))) - SLACK;
+        int minX = Math.min(ax, bx) - CLEARANCE, maxX = Math.max(ax, bx) + CLEARANCE;
+        int minY = Math.min(ay, by) - CLEARANCE, maxY = Math.max(ay, by) + CLEARANCE;
+        for (int k = 0; k < polygonX.size(); k++) {
+            int[] px = polygonX.get(k), py = polygonY.get(k);
+            if (!overlaps(px, py, minX, maxX, minY, maxY))
+                continue;
+            for (int i = 0, j = px.length - 1; i < px.length; j = i++) {
+                if (crosses(ax, ay, bx, by, px[j], py[j], px[i], py[i]))
+                    return true;
+                if (required > 0 && segmentDistance(ax, ay, bx, by, px[j], py[j], px[i], py[i]) < required)
+                    return true;
+            }
+            //a segment along edges or through corners does not cross them, so test its middle too
+            if (inside(k, (ax + bx) / 2.0, (ay + by) / 2.0) || inside(k, ax, ay) || inside(k, bx, by))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Distance from a point to the nearest obstacle, 0 inside one
+     */
+    public double clearance(double x, double y) {
+        double nearest = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < polygonX.size(); k++) {
+            if (inside(k, x, y))
+                return 0;
+            int[] px = polygonX.get(k), py = polygonY.get(k);
+            for (int i = 0, j = px.length - 1; i < px.length; j = i++)
+                nearest = Math.min(nearest, pointDistance(x, y, px[j], py[j], px[i], py[i]));
+        }
+        return nearest;
+    }
+
+    /**
+     * Whether a point lies inside any obstacle
+     */
+    public boolean inside(double x, double y) {
+        for (int k = 0; k < polygonX.size(); k++)
+            if (inside(k, x, y))
+                return true;
+        return false;
+    }
+
+    private boolean inside(int k, double x, double y) {
+        int[] px = polygonX.get(k), py = polygonY.get(k);
+        boolean in = false;
+        for (int i = 0, j = px.length - 1; i < px.length; j = i++) {
+            if ((py[i] > y) != (py[j] > y) && x < (double) (px[j] - px[i]) * (y - py[i]) / (py[j] - py[i]) + px[i])
+                in = !in;
+        }
+        return in;
+    }
+
+    private static boolean overlaps(int[] px, int[] py, int minX, int maxX, int minY, int maxY) {
+        int lowX = Integer.MAX_VALUE, highX = Integer.MIN_VALUE, lowY = Integer.MAX_VALUE, highY = Integer.MIN_VALUE;
+        for (int i = 0; i < px.length; i++) {
+            lowX = Math.min(lowX, px[i]);
+            highX = Math.max(highX, px[i]);
+            lowY = Math.min(lowY, py[i]);
+            highY = Math.max(highY, py[i]);
+        }
+        return lowX <= maxX && highX >= minX && lowY <= maxY && highY >= minY;
+    }
+
+    /**
+     * Proper intersection of segments ab and cd (touching does not count)
+     */
+    private static boolean crosses(long ax, long ay, long bx, long by, long cx, long cy, long dx, long dy) {
+        long d1 = cross(cx, cy, dx, dy, ax, ay);
+        long d2 = cross(cx, cy, dx, dy, bx, by);
+        long d3 = cross(ax, ay, bx, by, cx, cy);
+        long d4 = cross(ax, ay, bx, by, dx, dy);
+        return ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0));
+    }
+
+    /**
+     * Closest approach of segments ab and cd that do not cross
+     */
+    private static double segmentDistance(int ax, int ay, int bx, int by, int cx, int cy, int dx, int dy) {
+        return Math.min(Math.min(pointDistance(ax, ay, cx, cy, dx, dy), pointDistance(bx, by, cx, cy, dx, dy)),
+            Math.min(pointDistance(cx, cy, ax, ay, bx, by), pointDistance(dx, dy, ax, ay, bx, by)));
+    }
+
+    /**
+     * Distance from point p to segment ab
+     */
+    private static double pointDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double vx = bx - ax, vy = by - ay;
+        double length = vx * vx + vy * vy;
+        double t = length == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * vx + (py - ay) * vy) / length));
+        return Math.hypot(px - ax - t * vx, py - ay - t * vy);
+    }
+
+    private static long cross(long ox, long oy, long ax, long ay, long bx, long by) {
+        return (ax - ox) * (by - oy) - (ay - oy) * (bx - ox);
+    }
+
+    /**
+     * Adds a passing point outside each convex corner of polygon k,
+     * far enough along the corner's bisector to keep CLEARANCE from both edges
+     */
+    private void addCorners(int k, List<int[]> waypoints) {
+        int[] px = polygonX.get(k), py = polygonY.get(k);
+        int n = px.length;
+        for (int i = 0; i < n; i++) {
+            int prev = (i + n - 1) % n, next = (i + 1) % n;
+            double ax = px[prev] - px[i], ay = py[prev] - py[i];
+            double bx = px[next] - px[i], by = py[next] - py[i];
+            double la = Math.hypot(ax, ay), lb = Math.hypot(bx, by);
+            if (la == 0 || lb == 0)
+                continue;
+            ax /= la;
+            ay /= la;
+            bx /= lb;
+            by /= lb;
+            double sx = ax + bx, sy = ay + by, ls = Math.hypot(sx, sy);
+            if (ls < 1e-9)
+                continue;
+            double halfSine = Math.sqrt(Math.max(1e-6, (1 - (ax * bx + ay * by)) / 2));
+            double offset = Math.min(3 * CLEARANCE, CLEARANCE / halfSine);
+            int wx = (int) Math.round(px[i] - sx / ls * offset);
+            int wy = (int) Math.round(py[i] - sy / ls * offset);
+            //reflex corners push the point inward, and corners next to other obstacles may be too close to them
+            if (clearance(wx, wy) >= CLEARANCE - SLACK)
+                waypoints.add(new int[] {wx, wy});
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+* Held-Karp lower bound on the shortest open path from the origin
+* The path is closed into a cycle through a dummy point joined to the
+* origin and, at no cost, to whichever destination comes last, so a
+* 1-tree is a spanning tree of the real points plus the dummy's edge to
+* the origin and its cheapest edge to a destination
+* Subgradient optimisation raises the bound by penalising every point
+* whose tree degree is not 2; the tree itself is Prim on the flat matrix
+*/
+public class OneTreeBound {
+    public static final int MAX_ITERATIONS = 100;
+    /** Point pairs one solve may look at, so large inputs run fewer iterations */
+    private static final long MAX_WORK = 50_000_000L;
+    /** Gaps this small are rounding in the path length, not a real gap */
+    public static final double TOLERANCE = 1e-9;
+    /** Iterations without a better bound before the step size is halved */
+    private static final int PATIENCE = 5;
+
+    private final DistanceMatrix matrix;
+    private final int size;
+    private final double[] pi;
+    private final double[] key;
+    private final int[] parent;
+    private final int[] degree;
+    private final boolean[] inTree;
+    private double bound;
+    private int iterations;
+
+    public OneTreeBound(DistanceMatrix matrix) {
+        this.matrix = matrix;
+        size = matrix.size();
+        pi = new double[size];
+        key = new double[size];
+        parent = new int[size];
+        degree = new int[size];
+        inTree = new boolean[size];
+    }
+
+    /**
+     * Raises the bound until it is within targetGap (a fraction) of upper,
+     * the length of a known path, or the iteration limit or the deadline
+     * (System.nanoTime(), Long.MAX_VALUE for none) is reached
+     */
+    public double solve(double upper, double targetGap, long deadline) {
+        bound = 0;
+        iterations = 0;
+        if (size <= 2)
+            return bound = size == 2 ? matrix.get(0, 1) : 0;
+        Arrays.fill(pi, 0);
+        double lambda = 2;
+        int stale = 0;
+        long limit = Math.max(10, Math.min(MAX_ITERATIONS, MAX_WORK / ((long) size * size)));
+        while (iterations < limit) {
+            iterations++;
+            double tree = oneTree();
+            if (tree > bound) {
+                bound = tree;
+                stale = 0;
+            } else if (++stale == PATIENCE) {
+                lambda /= 2;
+                stale = 0;
+            }
+            if (proves(upper, targetGap) || lambda < 1e-4)
+                break;
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)
+                break;
+            double norm = 0;
+            for (int i = 0; i < size; i++)
+                norm += (degree[i] - 2) * (degree[i] - 2);
+            if (norm == 0) {
+                //the 1-tree is a path, so the bound is the optimum
+                break;
+            }
+            double step = lambda * (upper - tree) / norm;
+            for (int i = 0; i < size; i++)
+                pi[i] += step * (degree[i] - 2);
+        }
+        return bound;
+    }
+
+    public double getBound() {
+        return bound;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Whether a path of length upper is known to be within targetGap of the optimum
+     */
+    public boolean proves(double upper, double targetGap) {
+        return gap(upper) <= targetGap + TOLERANCE;
+    }
+
+    /**
+     * Fraction by which a path of length upper may exceed the optimum
+     */
+    public double gap(double upper) {
+        return upper <= 0 ? 0 : Math.max(0, (upper - bound) / upper);
+    }
+
+    /**
+     * Builds the 1-tree under the current penalties, fills degree and
+     * returns its penalised weight minus twice the penalties
+     */
+    private double oneTree() {
+        for (int i = 0; i < size; i++) {
+            key[i] = Double.MAX_VALUE;
+            inTree[i] = false;
+            degree[i] = 0;
+        }
+        key[0] = 0;
+        parent[0] = -1;
+        double total = 0;
+        for (int added = 0; added < size; added++) {
+            int next = -1;
+            for (int j = 0; j < size; j++)
+                if (!inTree[j] && (next == -1 || key[j] < key[next]))
+                    next = j;
+            inTree[next] = true;
+            total += key[next];
+            if (parent[next] >= 0) {
+                degree[next]++;
+                degree[parent[next]]++;
+            }
+            for (int j = 0; j < size; j++) {
+                if (inTree[j])
+                    continue;
+                double w = matrix.get(next, j) + pi[next] + pi[j];
+                if (w < key[j]) {
+                    key[j] = w;
+                    parent[j] = next;
+                }
+            }
+        }
+
+        //the dummy point: its edge to the origin and its cheapest one to a destination
+        int last = 1;
+        for (int j = 2; j < size; j++)
+            if (pi[j] < pi[last])
+                last = j;
+        total += pi[0] + pi[last];
+        degree[0]++;
+        degree[last]++;
+
+        double penalties = 0;
+        for (int i = 0; i < size; i++)
+            penalties += pi[i];
+        return total - 2 * penalties;
+    }
+}
@@ -0,0 +1,408 @@
+import java.util.Arrays;
+
+/**
+* Picks and orders the subset of destinations that scores the most
+* within a budget (seconds or robot units, depending on the CostModel)
+* Greedy insertion with 2-opt, from the origin and from the planned tour,
+* gives the first path; a depth-first branch-and-bound then tries branches
+* cheapest leg first until it is done or out of time, and hands back the
+* best path either way
+* Branches are pruned with fractional knapsacks over the cheapest legs
+* into and out of each remaining destination, from the current stop or
+* another remaining destination; when all of them would fit, a spanning
+* tree over them and the current stop checks whether they really can
+*/
+public class Orienteering {
+    /** Search time when no limit= is given */
+    public static final long DEFAULT_MILLIS = 2000;
+    private static final double EPSILON = 1e-9;
+
+    private final DistanceMatrix matrix;
+    private final CostModel model;
+    private final int size;
+    private final double budget;
+    private final double[] score;
+    /** Cheapest leg from i to j whatever came before i, at i * size + j; null when the model is the matrix */
+    private final double[] low;
+
+    private final boolean[] visited;
+    private final int[] path;
+    private final int[][] children;
+    private final double[][] childCost;
+    /** Reachable destinations with their weights and cheapest legs out (then spanning tree keys), for bound() */
+    private final int[] open;
+    private final double[] in;
+    private final double[] key;
+    private int[] start;
+    private int[] best;
+    private double bestScore;
+    private double bestCost;
+    private long deadline;
+    private long nodes;
+    private boolean stopped;
+
+    /**
+     * score[i] is the value of destination i, or null to count destinations
+     */
+    public Orienteering(DistanceMatrix matrix, CostModel model, double budget, double[] score) {
+        this.matrix = matrix;
+        this.model = model;
+        this.budget = budget;
+        size = matrix.size();
+        this.score = new double[size];
+        for (int i = 1; i < size; i++)
+            this.score[i] = score == null ? 1 : score[i];
+
+        if (model == matrix) {
+            low = null;
+        } else {
+            //the travel time model is cubic in the points already, so this is too
+            low = new double[size * size];
+            for (int cur = 0; cur < size; cur++) {
+                for (int next = 0; next < size; next++) {
+                    double min = Double.MAX_VALUE;
+                    for (int prev = 0; prev < size; prev++)
+                        min = Math.min(min, model.legCost(prev, cur, next));
+                    low[cur * size + next] = min;
+                }
+            }
+        }
+
+        visited = new boolean[size];
+        path = new int[size];
+        children = new int[size][];
+        childCost = new double[size][];
+        open = new int[size];
+        in = new double[size];
+        key = new double[size];
+    }
+
+    /**
+     * Returns the best tour found within millis, starting at 0 and covering
+     * only the chosen destinations
+     */
+    public int[] solve(long millis) {
+        Preprocess.log("---Orienteering Begin---");
+        deadline = System.nanoTime() + millis * 1000000L;
+        nodes = 0;
+        stopped = false;
+        best = new int[1];
+        bestScore = 0;
+        bestCost = 0;
+        greedy(1);
+        if (start != null)
+            greedy(prefix(start));
+        Preprocess.log("Greedy insertion reaches " + (best.length - 1) + ", score " + bestScore + ", cost " + bestCost);
+        visited[0] = true;
+        search(1, 0, 0, 0, 0);
+        if (stopped)
+            Preprocess.log("Out of time after " + nodes + " nodes, keeping the best path so far");
+        Preprocess.log("Reached " + (best.length - 1) + " of " + (size - 1) + ", score " + bestScore + ", cost " + bestCost);
+        Preprocess.log("---Orienteering End---\n");
+        return best;
+    }
+
+    /**
+     * A tour over every destination, e.g. the planned one; its longest
+     * stretch from the origin within budget also seeds greedy insertion
+     */
+    public void setStart(int[] tour) {
+        start = tour;
+    }
+
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    private boolean expired() {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * How many stops of the start tour, origin included, fit the budget
+     */
+    private int prefix(int[] tour) {
+        double used = 0;
+        int length = 1;
+        while (length < tour.length) {
+            used += model.legCost(tour[Math.max(0, length - 2)], tour[length - 1], tour[length]);
+            if (used > budget)
+                break;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * From the first length stops of the start tour (just the origin for
+     * 1), keeps inserting the destination and slot with the most score per
+     * added cost that still fits the budget, shortening the path with
+     * 2-opt whenever nothing fits; keeps the result if it beats the best
+     */
+    private void greedy(int length) {
+        int[] route = new int[size];
+        if (length > 1)
+            System.arraycopy(start, 0, route, 0, length);
+        for (int i = 1; i < length; i++)
+            visited[route[i]] = true;
+        double used = model.tourCost(Arrays.copyOf(route, length));
+        while (length < size && !expired()) {
+            int bestPoint = -1, bestAt = -1;
+            double bestRatio = -1, bestDelta = 0;
+            for (int j = 1; j < size; j++) {
+                if (visited[j])
+                    continue;
+                for (int at = 1; at <= length; at++) {
+                    double delta = insertionDelta(route, length, at, j);
+                    if (used + delta > budget)
+                        continue;
+                    double ratio = score[j] / Math.max(delta, EPSILON);
+                    if (ratio > bestRatio) {
+                        bestRatio = ratio;
+                        bestPoint = j;
+                        bestAt = at;
+                        bestDelta = delta;
+                    }
+                }
+            }
+            if (bestPoint < 0) {
+                //nothing fits any more; a shorter path may make room
+                double shorter = shorten(route, length);
+                if (shorter >= used - EPSILON)
+                    break;
+                used = shorter;
+                continue;
+            }
+            System.arraycopy(route, bestAt, route, bestAt + 1, length - bestAt);
+            route[bestAt] = bestPoint;
+            length++;
+            used += bestDelta;
+            visited[bestPoint] = true;
+        }
+        int[] path = Arrays.copyOf(route, length);
+        double gained = 0;
+        for (int i = 1; i < length; i++) {
+            gained += score[path[i]];
+            visited[path[i]] = false;
+        }
+        double cost = model.tourCost(path);
+        if (gained > bestScore + EPSILON || (gained > bestScore - EPSILON && cost < bestCost)) {
+            best = path;
+            bestScore = gained;
+            bestCost = cost;
+        }
+    }
+
+    /**
+     * 2-opt on route[1..length), reversing any stretch that lowers the
+     * model's cost, until none does or time runs out; returns the cost
+     */
+    private double shorten(int[] route, int length) {
+        int[] tour = new int[length];
+        System.arraycopy(route, 0, tour, 0, length);
+        double cost = model.tourCost(tour);
+        boolean improved = true;
+        while (improved && !expired()) {
+            improved = false;
+            for (int i = 1; i < length - 1 && !expired(); i++) {
+                for (int j = i + 1; j < length; j++) {
+                    reverse(tour, i, j);
+                    double reversed = model.tourCost(tour);
+                    if (reversed < cost - EPSILON) {
+                        cost = reversed;
+                        improved = true;
+                    } else {
+                        reverse(tour, i, j);
+                    }
+                }
+            }
+        }
+        System.arraycopy(tour, 0, route, 0, length);
+        return cost;
+    }
+
+    private static void reverse(int[] tour, int i, int j) {
+        for (; i < j; i++, j--) {
+            int t = tour[i];
+            tour[i] = tour[j];
+            tour[j] = t;
+        }
+    }
+
+    /**
+     * Change in cost from putting j between route[at - 1] and route[at];
+     * the model charges each leg by the stop before it too, so the two
+     * legs after j change as well
+     */
+    private double insertionDelta(int[] route, int length, int at, int j) {
+        int before = route[Math.max(0, at - 2)], p = route[at - 1];
+        double delta = model.legCost(before, p, j);
+        if (at < length) {
+            int n1 = route[at];
+            delta += model.legCost(p, j, n1) - model.legCost(before, p, n1);
+            if (at + 1 < length) {
+                int n2 = route[at + 1];
+                delta += model.legCost(j, n1, n2) - model.legCost(p, n1, n2);
+            }
+        }
+        return delta;
+    }
+
+    private void search(int depth, int prev, int cur, double used, double gained) {
+        if (gained > bestScore + EPSILON || (gained > bestScore - EPSILON && used < bestCost)) {
+            best = new int[depth];
+            System.arraycopy(path, 0, best, 0, depth);
+            bestScore = gained;
+            bestCost = used;
+        }
+        if (depth == size || stopped)
+            return;
+        nodes++;
+        //a bound costs far more than a look at the clock
+        if (expired()) {
+            stopped = true;
+            return;
+        }
+        if (bound(prev, cur, budget - used) + gained <= bestScore + EPSILON)
+            return;
+
+        if (children[depth] == null) {
+            children[depth] = new int[size];
+            childCost[depth] = new double[size];
+        }
+        int[] next = children[depth];
+        double[] cost = childCost[depth];
+        int count = 0;
+        for (int j = 1; j < size; j++) {
+            if (visited[j])
+                continue;
+            double c = model.legCost(prev, cur, j);
+            if (used + c > budget)
+                continue;
+            int at = count++;
+            while (at > 0 && cost[at - 1] > c) {
+                next[at] = next[at - 1];
+                cost[at] = cost[at - 1];
+                at--;
+            }
+            next[at] = j;
+            cost[at] = c;
+        }
+        for (int i = 0; i < count && !stopped; i++) {
+            int j = next[i];
+            visited[j] = true;
+            path[depth] = j;
+            search(depth + 1, cur, j, used + cost[i], gained + score[j]);
+            visited[j] = false;
+        }
+    }
+
+    /**
+     * Most score still collectable from cur (reached from prev) with the
+     * remaining budget, the lower of two knapsacks: one charging each
+     * destination its cheapest leg in, one the mean of its cheapest legs
+     * in and out, with the budget raised by half the dearest leg out since
+     * the last stop leaves no leg
+     */
+    private double bound(int prev, int cur, double remaining) {
+        int count = 0;
+        double total = 0, lowest = Double.MAX_VALUE, first = Double.MAX_VALUE, dearest = 0;
+        for (int j = 1; j < size; j++) {
+            if (visited[j])
+                continue;
+            //a path through the remaining destinations enters j from cur or one of them
+            double start = model.legCost(prev, cur, j), c = start, out = Double.MAX_VALUE;
+            for (int o = 1; o < size; o++) {
+                if (o != j && !visited[o]) {
+                    c = Math.min(c, low(o, j));
+                    out = Math.min(out, low(j, o));
+                }
+            }
+            if (c > remaining)
+                continue;
+            open[count] = j;
+            in[count] = c;
+            key[count] = out == Double.MAX_VALUE ? 0 : out;
+            count++;
+            total += score[j];
+            lowest = Math.min(lowest, score[j]);
+            first = Math.min(first, start);
+            dearest = Math.max(dearest, key[count - 1]);
+        }
+        if (count == 0)
+            return 0;
+
+        double byIn = knapsack(count, remaining);
+        for (int i = 0; i < count; i++)
+            in[i] = (in[i] + key[i]) / 2;
+        double bound = Math.min(byIn, knapsack(count, remaining + (dearest - first) / 2));
+        //every one fits by the cheapest legs, but the path is still a spanning tree over them
+        if (bound >= total - EPSILON && count > 1 && spanningTree(prev, cur, count) > remaining + EPSILON)
+            return total - lowest;
+        return bound;
+    }
+
+    /**
+     * Fractional knapsack of open[0..count) weighing in[], best score per
+     * weight first; reorders both
+     */
+    private double knapsack(int count, double capacity) {
+        for (int i = 1; i < count; i++) {
+            int j = open[i];
+            double w = in[i], k = key[i];
+            int at = i;
+            while (at > 0 && score[open[at - 1]] * w < score[j] * in[at - 1]) {
+                open[at] = open[at - 1];
+                in[at] = in[at - 1];
+                key[at] = key[at - 1];
+                at--;
+            }
+            open[at] = j;
+            in[at] = w;
+            key[at] = k;
+        }
+        double collected = 0;
+        for (int i = 0; i < count; i++) {
+            if (in[i] > capacity)
+                return collected + score[open[i]] * capacity / in[i];
+            capacity -= in[i];
+            collected += score[open[i]];
+        }
+        return collected;
+    }
+
+    /**
+     * Prim's minimum spanning tree over cur and open[0..count), each edge
+     * costing the cheaper of its two directions
+     */
+    private double spanningTree(int prev, int cur, int count) {
+        for (int i = 0; i < count; i++)
+            key[i] = model.legCost(prev, cur, open[i]);
+        double length = 0;
+        for (int added = 0; added < count; added++) {
+            int nearest = added;
+            for (int i = added + 1; i < count; i++)
+                if (key[i] < key[nearest])
+                    nearest = i;
+            length += key[nearest];
+            swap(added, nearest);
+            int a = open[added];
+            for (int i = added + 1; i < count; i++)
+                key[i] = Math.min(key[i], Math.min(low(a, open[i]), low(open[i], a)));
+        }
+        return length;
+    }
+
+    private void swap(int i, int j) {
+        int o = open[i];
+        open[i] = open[j];
+        open[j] = o;
+        double k = key[i];
+        key[i] = key[j];
+        key[j] = k;
+    }
+
+    private double low(int from, int to) {
+        return low == null ? matrix.get(from, to) : low[from * size + to];
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+* Runs many construction + local search strategies at once on a
+* ForkJoinPool and keeps the best tour any of them finds
+* Strategies: the tours handed in (NN, magic, Held-Karp), nearest
+* neighbor forced through every destination first, and randomised
+* restarts that perturb the best tour so far until the deadline
+*/
+public class PortfolioSolver {
+    private final DistanceMatrix matrix;
+    private final CostModel model;
+    private final LocalSearch template;
+    private final List<String> startNames = new ArrayList<>();
+    private final List<int[]> startTours = new ArrayList<>();
+    private final AtomicReference<Result> best = new AtomicReference<>();
+    private TourListener listener;
+    private long start;
+    private long deadline;
+
+    /**
+     * A tour, its cost under the model and the strategy that found it
+     */
+    public static final class Result {
+        public final int[] tour;
+        public final double cost;
+        public final String strategy;
+
+        Result(int[] tour, double cost, String strategy) {
+            this.tour = tour;
+            this.cost = cost;
+            this.strategy = strategy;
+        }
+    }
+
+    public PortfolioSolver(DistanceMatrix matrix, CostModel model) {
+        this(matrix, model, new LocalSearch(matrix, model));
+    }
+
+    /**
+     * Reuses the candidate lists of a search already built for matrix and model
+     */
+    public PortfolioSolver(DistanceMatrix matrix, CostModel model, LocalSearch search) {
+        this.matrix = matrix;
+        this.model = model;
+        template = new LocalSearch(search);
+    }
+
+    /**
+     * Adds a ready-made tour to be refined alongside the built-in strategies
+     */
+    public void addStart(String name, int[] tour) {
+        startNames.add(name);
+        startTours.add(tour);
+    }
+
+    /**
+     * Told about every new best tour while solving
+     */
+    public void setListener(TourListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Runs every strategy until they finish or the time runs out; tasks
+     * not started by then are skipped and the local searches they run
+     * stop mid-pass at the deadline
+     */
+    public Result solve(long millis) {
+        Preprocess.log("---Portfolio Begin---");
+        start = System.nanoTime();
+        deadline = start + millis * 1000000L;
+        template.setDeadline(deadline);
+        if (startTours.isEmpty())
+            addStart("NN", matrix.size() > 1 ? nearestFrom(1) : new int[1]);
+        for (int i = 0; i < startTours.size(); i++)
+            offer(startTours.get(i), startNames.get(i));
+        ForkJoinPool pool = new ForkJoinPool();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < startTours.size(); i++) {
+            final int start = i;
+            tasks.add(pool.submit(() -> {
+                if (!expired())
+                    offer(improve(startTours.get(start)), startNames.get(start));
+            }));
+        }
+        for (int seed = 1; seed < matrix.size(); seed++) {
+            final int first = seed;
+            tasks.add(pool.submit(() -> {
+                if (!expired())
+                    offer(improve(nearestFrom(first)), "NN via #" + matrix.point(first).getNumber());
+            }));
+        }
+        for (int w = 0; w < pool.getParallelism(); w++) {
+            final int worker = w;
+            tasks.add(pool.submit(() -> restarts(worker)));
+        }
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+        pool.shutdown();
+
+        Result result = best.get();
+        Preprocess.log("Best - " + result.cost + " " + model.unit() + " from " + result.strategy);
+        Preprocess.log("---Portfolio End---\n");
+        return result;
+    }
+
+    private boolean expired() {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    private int[] improve(int[] tour) {
+        return new LocalSearch(template).improve(tour);
+    }
+
+    /**
+     * Publishes a tour if it beats the best so far, without locking
+     * The listener is only told while the tour is still the best, so it
+     * never sees the cost go up
+     */
+    private void offer(int[] tour, String strategy) {
+        Result next = new Result(tour, model.tourCost(tour), strategy);
+        Result current;
+        do {
+            current = best.get();
+            if (current != null && current.cost <= next.cost)
+                return;
+        } while (!best.compareAndSet(current, next));
+        if (listener != null) {
+            synchronized (this) {
+                if (best.get() == next)
+                    listener.improved(tour, next.cost, (System.nanoTime() - start) / 1000000L, strategy);
+            }
+        }
+    }
+
+    /**
+     * Nearest neighbor that goes to the given destination first,
+     * following routed legs like NearestNeighborConstructor
+     */
+    private int[] nearestFrom(int first) {
+        return NearestNeighborConstructor.nearestFrom(matrix, first);
+    }
+
+    /**
+     * Swaps two random adjacent stretches of the best tour (a double
+     * bridge on an open path) and locally optimises the result
+     */
+    private void restarts(int worker) {
+        int size = matrix.size();
+        if (size < 4)
+            return;
+        SplittableRandom random = new SplittableRandom(worker);
+        LocalSearch search = new LocalSearch(template);
+        int[] kicked = new int[size];
+        while (!expired()) {
+            int[] from = best.get().tour;
+            int a = 1 + random.nextInt(size - 2);
+            int b = a + 1 + random.nextInt(size - a - 1);
+            int c = b + 1 + random.nextInt(size - b);
+            System.arraycopy(from, 0, kicked, 0, a);
+            System.arraycopy(from, b, kicked, a, c - b);
+            System.arraycopy(from, a, kicked, a + c - b, b - a);
+            System.arraycopy(from, c, kicked, c, size - c);
+            offer(search.improve(kicked), "restart");
+        }
+    }
+}
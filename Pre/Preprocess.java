@@ -1,201 +1,440 @@
+import java.io.File;
 import java.util.Arrays;
-import java.util.Collections;
-import java.lang.Math;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Set;
-
-import org.jgrapht.alg.HamiltonianCycle;
-import org.jgrapht.alg.KruskalMinimumSpanningTree;
-
-import org.jgrapht.*;
-import org.jgrapht.graph.*;
-import org.jgrapht.traverse.*;
-import org.jgrapht.graph.builder.UndirectedWeightedGraphBuilder;
-import org.jgrapht.ext.JGraphModelAdapter;
-import org.jgraph.JGraph;
-import javax.swing.JFrame;
 
 /**
 * Serves as a helper class for the
 * DE2Bot Travelling Salesbot Problem
-* Takes in a starting co-ordinate and 12 others
+* Takes in a starting co-ordinate and any number of others
 * and returns the optimal ordering in which the robot
 * should visit them
 */
 public class Preprocess {
-    private static Coordinate[] inCoords = new Coordinate[12];
-    private static Coordinate[] outCoords  = new Coordinate[12];
+    private static Coordinate[] inCoords = new Coordinate[0];
+    private static Coordinate[] outCoords  = new Coordinate[0];
     Coordinate origin = new Coordinate(0,0);
 
-    static Graph<Coordinate, DefaultEdge> graph;
-    JGraphModelAdapter<Coordinate, DefaultEdge> jgraphAdapter;
+    /** Set false to keep the solvers from logging, e.g. when many run at once */
+    static volatile boolean verbose = true;
+
+    /** The cost model and winning strategy of the last plan */
+    CostModel model;
+    String strategy;
+    /** Every tour the last plan produced along the way, for the simulate argument */
+    private final List<int[]> candidates = new ArrayList<>();
+    private final List<String> candidateNames = new ArrayList<>();
+
+    /**
+     * Nearest neighbor tour, see NearestNeighborConstructor
+     */
+    public int[] nearestNeighbor(DistanceMatrix matrix) {
+        return construct(new NearestNeighborConstructor(), matrix);
+    }
+
+    /**
+     * Nearest addition tour, see MagicConstructor
+     */
+    public int[] magic(DistanceMatrix matrix) {
+        return construct(new MagicConstructor(), matrix);
+    }
 
     /**
-     * Uses the nearest neighbor approximation
+     * Builds a tour with the given constructor, logging it between banners
      */
-    public List<Coordinate> nearestNeighbor(Graph<Coordinate, DefaultEdge> duplGraph) {
-        System.out.println("---NN Begin---");
-        Coordinate vertex = origin;
-        double pathLength = 0;
-        int count = 0;
-        List<Coordinate> list = new ArrayList<>();
-        list.add(vertex);
-        while((duplGraph.vertexSet()).size() > 1) {
-            Set<DefaultEdge> edges = duplGraph.edgesOf(vertex);
-            DefaultEdge minEdge = minimumEdge(duplGraph, edges);
-            //System.out.printf("---\nSource - %s\nTarget - %s\n- ", duplGraph.getEdgeSource(minEdge), duplGraph.getEdgeTarget(minEdge));
-            pathLength += duplGraph.getEdgeWeight(minEdge);
-            duplGraph.removeVertex(vertex);
-            vertex = duplGraph.getEdgeTarget(minEdge) == vertex ? duplGraph.getEdgeSource(minEdge) : duplGraph.getEdgeTarget(minEdge);
-            list.add(vertex);
+    public int[] construct(TourConstructor constructor, DistanceMatrix matrix) {
+        log("---" + constructor.name() + " Begin---");
+        int[] tour = constructor.construct(matrix);
+        if (verbose)
+            log("Path - " + matrix.describe(tour));
+        log("---" + constructor.name() + " End---\n");
+        return tour;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("---Main Begin---");
+        File report = metricsReport(args);
+        Metrics.enabled = report != null;
+        verbose = !Arrays.asList(args).contains("quiet");
+        outCoords = Metrics.time("initialize", () -> new AssemblyWriter().initialize());
+        inCoords = Metrics.time("populate", () -> AssemblyWriter.populate());
+        if (MultiRobotPlanner.robotsArg(args) > 1)
+            MultiRobotPlanner.run(inCoords, args);
+        else
+            planAndWrite(args);
+        if (report != null) {
+            Metrics.writeReport(report);
+            System.out.println("Metrics written to " + report);
         }
-        System.out.println("Path - " + list);
-        System.out.println("---NN End---\n");
-        return list;
+        System.out.println("---Main End---\n");
     }
 
     /**
-     * Finds the minimum spanning tree using Kruskal's algorithm
+     * Plans inCoords for a single robot (from the cache if possible) and patches the ASM file
      */
-    public double kruskalPath(Graph<Coordinate, DefaultEdge> graph) {
-        System.out.println("---Kruskal Begin---");
-        Set<DefaultEdge> set = new KruskalMinimumSpanningTree(graph).getMinimumSpanningTreeEdgeSet();
-        double weight = new KruskalMinimumSpanningTree(graph).getMinimumSpanningTreeTotalWeight();
+    private static void planAndWrite(String[] args) throws Exception {
+        Preprocess p = new Preprocess();
+        DistanceMatrix matrix = Metrics.time("distanceMatrix", () -> new DistanceMatrix(p.origin, inCoords, DistanceKernel.metricArg(args)));
+        File obstacles = ObstacleLegs.obstaclesArg(args);
+        ObstacleMap map = obstacles == null ? null : ObstacleMap.load(obstacles);
+        ObstacleLegs legs = map == null ? null
+            : Metrics.time("obstacles", () -> ObstacleLegs.apply(map, matrix, new File(new File("").getAbsoluteFile().getParent() + "/Pre/.legcache")));
+        //key cached tours on the map's content rather than its file name
+        String[] cacheArgs = map == null ? args
+            : Arrays.stream(args).map(a -> a.startsWith("obstacles=") ? "obstacles=" + map.hash() : a).toArray(String[]::new);
+        //System.out.println("outCoords - " + Arrays.toString(outCoords));
 
-        List<DefaultEdge> list = new ArrayList<>();
-        int newNumber = 0;
-        for (DefaultEdge e : set) {
-            if (graph.getEdgeSource(e).getNumber() == newNumber) {
-                list.add(graph.getEdgeSource(e));
-                list.add(graph.getEdgeTarget(e));
-                newNumber = graph.getEdgeTarget(e).getNumber();
-            }
-            //System.out.printf("---\nSource - %s\nTarget - %s\n- ",graph.getEdgeSource(e), graph.getEdgeTarget(e));
+        TourCache cache = new TourCache(new File(new File("").getAbsoluteFile().getParent() + "/Pre/.tourcache"));
+        int[] useTour = null;
+        if (!Arrays.asList(args).contains("nocache"))
+            useTour = Metrics.time("tourCache", () -> cache.get(matrix, cacheArgs));
+        if (useTour == null) {
+            useTour = p.plan(matrix, args);
+            cache.put(matrix, cacheArgs, useTour, p.strategy);
         }
 
-        System.out.println(set);
-        System.out.println(weight);
-        System.out.println("---Kruskal End--\n");
-        return weight;
+        outCoords = legs == null ? matrix.toCoordinates(useTour) : legs.expand(matrix, useTour);
+        File[] targets = asmTargets(args);
+        Metrics.run("writeToASM", () -> {
+            if (Arrays.asList(args).contains("precompute"))
+                AssemblyWriter.writePrecomputedToASM(outCoords, targets);
+            else if (targets.length == 0)
+                AssemblyWriter.writeToASM(outCoords);
+            else
+                AssemblyWriter.writeToASM(outCoords, targets);
+        });
+        File mif = mifArg(args);
+        if (mif != null) {
+            boolean precomputed = Arrays.asList(args).contains("precompute");
+            String program = targets.length > 0 ? targets[0].getPath()
+                : new File("").getAbsoluteFile().getParent() + (precomputed ? "/ASM/move_to_points_precomputed.ASM" : "/ASM/move_to_points.ASM");
+            Metrics.run("writeMIF", () -> MifWriter.write(outCoords, precomputed, mif, new File(program.replaceFirst("\\.[^.]*$", "") + ".mif")));
+        }
     }
 
-    public List<Coordinate> magic(SimpleWeightedGraph<Coordinate, DefaultEdge> duplGraph){
-        System.out.println("---Magic Begin---");
-        duplGraph.removeVertex(origin);
-        List<Coordinate> list = HamiltonianCycle.getApproximateOptimalForCompleteGraph(duplGraph);
-        duplGraph.addVertex(origin);
-        DefaultEdge first = graph.getEdge(origin, list.get(0));
-        DefaultEdge end = graph.getEdge(origin, list.get(list.size() - 1));
-        if (graph.getEdgeWeight(first) < graph.getEdgeWeight(end)) {
-            //start with first
-            list.add(0, origin);
-        } else {
-            Collections.reverse(list);
-            list.add(0, origin);
+    /**
+     * Runs the solvers selected by args (time, deadline=MS, limit=MS, gap=PCT,
+     * simulate, budget=N) and returns the tour to drive; strategy and model describe it
+     */
+    public int[] plan(DistanceMatrix matrix, String[] args) {
+        boolean simulate = Arrays.asList(args).contains("simulate");
+        if (simulate && ObstacleLegs.obstaclesArg(args) != null)
+            //RunSimulator drives straight legs and would miss the waypoints around obstacles
+            throw new IllegalArgumentException("simulate does not support obstacles=, drop one of them");
+        candidates.clear();
+        candidateNames.clear();
+        long limit = (long) numberArg(args, "limit", 0);
+        int[] useTour = limit > 0 ? planWithin(matrix, args, limit) : planFully(matrix, args);
+        if (simulate)
+            useTour = fastestSimulated(matrix, useTour);
+
+        double budget = numberArg(args, "budget", Double.MAX_VALUE);
+        if (model.tourCost(useTour) > budget) {
+            useTour = orienteer(matrix, useTour, budget, limit > 0 ? limit : Orienteering.DEFAULT_MILLIS);
+            strategy = "Orienteering";
+            if (verbose)
+                log("Budgeted Cost - " + model.tourCost(useTour) + " " + model.unit());
         }
+        if (simulate && verbose)
+            logArrivals(matrix, useTour);
+        return useTour;
+    }
 
-        System.out.println("Path - " + list);
-        System.out.println("---Magic End---\n");
-        return list;
+    /**
+     * Picks the highest scoring subset of useTour's points that fits the budget
+     */
+    private int[] orienteer(DistanceMatrix matrix, int[] useTour, double budget, long millis) {
+        return Metrics.time("orienteering", () -> {
+            double[] score = new double[matrix.size()];
+            for (int i = 1; i < score.length; i++)
+                score[i] = matrix.point(i).getScore();
+            Orienteering orienteering = new Orienteering(matrix, model, budget, score);
+            orienteering.setStart(useTour);
+            return orienteering.solve(millis);
+        });
     }
 
-    public static void main(String[] args) throws Exception {
-        System.out.println("---Main Begin---");
-        outCoords = new AssemblyWriter().initialize();
-        inCoords = AssemblyWriter.populate();
-        Preprocess p = new Preprocess();
-        graph = p.createGraph();
-        //p.visualize();
-        //System.out.println("outCoords - " + Arrays.toString(outCoords));
-        //p.kruskalPath(p.createGraph());
+    /**
+     * Simulates every candidate tour of this plan and returns the quickest
+     */
+    private int[] fastestSimulated(DistanceMatrix matrix, int[] useTour) {
+        candidate(strategy, useTour);
+        int[][] tours = candidates.toArray(new int[0][]);
+        double[] times = Metrics.time("simulate", () -> RunSimulator.simulateAll(matrix, tours));
+        int best = tours.length - 1;
+        for (int i = 0; i < tours.length; i++) {
+            if (verbose)
+                log(String.format("Simulated %s - %.2f s", candidateNames.get(i), times[i]));
+            if (times[i] < times[best])
+                best = i;
+        }
+        if (tours[best] != useTour) {
+            strategy = candidateNames.get(best) + " (fastest simulated)";
+            log("Using " + strategy + "!");
+        }
+        return tours[best];
+    }
 
-        List<Coordinate> nnList = p.nearestNeighbor(p.createGraph());
-        List<Coordinate> magicList = p.magic((SimpleWeightedGraph) p.createGraph());
+    private void logArrivals(DistanceMatrix matrix, int[] tour) {
+        double[] arrival = new double[tour.length];
+        double total = new RunSimulator(matrix).simulate(tour, arrival);
+        for (int i = 1; i < tour.length; i++)
+            log(String.format("Arrives at #%d after %.2f s", matrix.point(tour[i]).getNumber(), arrival[i]));
+        log(String.format("Simulated Total - %.2f s", total));
+    }
 
+    private void candidate(String name, int[] tour) {
+        for (int[] known : candidates)
+            if (Arrays.equals(known, tour))
+                return;
+        candidates.add(tour);
+        candidateNames.add(name);
+    }
 
-        System.out.println("NN Path Length - " + getPathLength(graph, nnList));
-        System.out.println("Magic Path Length - " + getPathLength(graph, magicList));
+    /**
+     * Gives the AnytimeSolver limit milliseconds, logging each improvement,
+     * then the islands islands=MS more if asked
+     */
+    private int[] planWithin(DistanceMatrix matrix, String[] args, long limit) {
+        model = chooseModel(matrix, args);
+        AnytimeSolver solver = new AnytimeSolver(matrix, model);
+        solver.setConstructors(TourConstructor.constructArg(args));
+        solver.setTargetGap(numberArg(args, "gap", 0) / 100);
+        solver.addListener((tour, cost, elapsed, name) -> {
+            candidate(name, tour);
+            if (verbose)
+                log(String.format("%6d ms  %.2f %s  %s", elapsed, cost, model.unit(), name));
+        });
+        PortfolioSolver.Result result = Metrics.time("anytime", () -> solver.solve(limit));
+        strategy = result.strategy;
+        if (solver.getLowerBound() != null)
+            logGap(solver.getLowerBound(), getPathLength(matrix, result.tour));
+        long islandTime = (long) numberArg(args, "islands", 0);
+        if (islandTime > 0)
+            return runIslands(matrix, args, islandTime, result.tour, new ArrayList<>(), new ArrayList<>());
+        return result.tour;
+    }
 
-        List<Coordinate> uselist;
-        if (getPathLength(graph, nnList) < getPathLength(graph, magicList)) {
-            uselist = nnList;
-            System.out.println("Using Nearest Neighbors!");
-        } else {
-            uselist = magicList;
-            System.out.println("Using Magic!");
+    /**
+     * Runs every solver to completion, then the portfolio for deadline=MS
+     * and the islands for islands=MS unless the 1-tree bound already
+     * shows the tour is within gap=PCT
+     */
+    private int[] planFully(DistanceMatrix matrix, String[] args) {
+        List<TourConstructor> constructors = TourConstructor.constructArg(args);
+        List<int[]> starts = new ArrayList<>();
+        for (TourConstructor constructor : constructors) {
+            starts.add(Metrics.time(constructor.phase(), () -> construct(constructor, matrix)));
+            candidate(constructor.name(), starts.get(starts.size() - 1));
+        }
+        int[] exactTour = null;
+        if (matrix.size() - 1 <= HeldKarp.MAX_DESTINATIONS) {
+            exactTour = Metrics.time("heldKarp", () -> new HeldKarp(matrix).solve());
+            candidate("Held-Karp", exactTour);
         }
 
-        outCoords = uselist.subList(1, uselist.size()).toArray(outCoords);
-        AssemblyWriter.writeToASM(outCoords);
-        System.out.println("---Main End---\n");
+        int[] evaluated = Metrics.time("pathEvaluation", () -> evaluate(matrix, args, constructors, starts));
+        if (exactTour != null) {
+            if (verbose)
+                log("Held-Karp Path Length - " + getPathLength(matrix, exactTour));
+            if (model.tourCost(exactTour) < model.tourCost(evaluated)) {
+                evaluated = exactTour;
+                strategy = "Held-Karp";
+                log("Using Held-Karp!");
+            }
+        }
+
+        int[] start = evaluated;
+        int[] useTour = Metrics.time("localSearch", () -> new LocalSearch(matrix, model).improve(start));
+        if (model.tourCost(useTour) < model.tourCost(start))
+            strategy += " + Local Search";
+        if (verbose) {
+            log("Local Search Path Length - " + getPathLength(matrix, useTour));
+            log("Predicted Cost - " + model.tourCost(useTour) + " " + model.unit());
+        }
+
+        double targetGap = numberArg(args, "gap", 0) / 100;
+        double length = getPathLength(matrix, useTour);
+        OneTreeBound lower = new OneTreeBound(matrix);
+        Metrics.run("lowerBound", () -> lower.solve(length, targetGap, Long.MAX_VALUE));
+        logGap(lower, length);
+
+        long deadline = (long) numberArg(args, "deadline", 0);
+        if (deadline > 0 && model == matrix && lower.proves(length, targetGap)) {
+            log("Within the target gap, skipping the portfolio");
+        } else if (deadline > 0) {
+            int[] improved = useTour;
+            PortfolioSolver.Result result = Metrics.time("portfolio", () -> {
+                PortfolioSolver portfolio = new PortfolioSolver(matrix, model);
+                portfolio.addStart(strategy, improved);
+                for (int i = 0; i < starts.size(); i++)
+                    portfolio.addStart(constructors.get(i).name(), starts.get(i));
+                return portfolio.solve(deadline);
+            });
+            candidate(strategy, useTour);
+            useTour = result.tour;
+            strategy = "Portfolio (" + result.strategy + ")";
+            if (verbose) {
+                log("Portfolio Path Length - " + getPathLength(matrix, useTour));
+                logGap(lower, getPathLength(matrix, useTour));
+            }
+        }
+
+        long islandTime = (long) numberArg(args, "islands", 0);
+        if (islandTime > 0 && model == matrix && lower.proves(getPathLength(matrix, useTour), targetGap)) {
+            log("Within the target gap, skipping the islands");
+        } else if (islandTime > 0) {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < starts.size(); i++)
+                names.add(constructors.get(i).name());
+            useTour = runIslands(matrix, args, islandTime, useTour, names, starts);
+            if (verbose)
+                logGap(lower, getPathLength(matrix, useTour));
+        }
+        return useTour;
     }
 
-    /* --- HELPERS --- */
     /**
-     * Creates a graph from the loaded Coordinates
-     */
-    public Graph<Coordinate, DefaultEdge> createGraph() {
-        UndirectedWeightedGraphBuilder graphBuilder = new UndirectedWeightedGraphBuilder(new SimpleWeightedGraph(DefaultWeightedEdge.class));
-        for (Coordinate c : inCoords)
-            graphBuilder.addVertex(c);
-        graphBuilder.addVertex(origin);
-        for (int i = 0; i < inCoords.length; i++) {
-            graphBuilder.addEdge(inCoords[i], origin,  distance(inCoords[i], origin));
-            for (int j = i; j < inCoords.length; j++) {
-                if (i != j) {
-                    graphBuilder.addEdge(inCoords[i], inCoords[j],  distance(inCoords[i], inCoords[j]));
-                    //System.out.printf("Adding-\n%s and \n%s\nEdge weight %f\n---\n", inCoords[i], inCoords[j], distance(inCoords[i], inCoords[j]));
-                }
+     * Picks the starting tour that model rates cheapest, choosing model on the way
+     */
+    private int[] evaluate(DistanceMatrix matrix, String[] args, List<TourConstructor> constructors, List<int[]> starts) {
+        model = chooseModel(matrix, args);
+        int[] useTour = null;
+        for (int i = 0; i < starts.size(); i++) {
+            int[] tour = starts.get(i);
+            String name = constructors.get(i).name();
+            if (model != matrix && verbose)
+                log(name + " Predicted Time - " + model.tourCost(tour));
+            if (verbose)
+                log(name + " Path Length - " + getPathLength(matrix, tour));
+            if (useTour == null || model.tourCost(tour) < model.tourCost(useTour)) {
+                useTour = tour;
+                strategy = name;
             }
         }
-        return graphBuilder.build();
+        log("Using " + strategy + "!");
+        return useTour;
     }
 
-    public DefaultEdge minimumEdge(Graph<Coordinate, DefaultEdge> someGraph, Set<DefaultEdge> edgeSet) {
-        DefaultEdge e = null;
-        double minWeight = Double.MAX_VALUE;
-        for (DefaultEdge some : edgeSet) {
-            if (someGraph.getEdgeWeight(some) < minWeight) {
-                minWeight = someGraph.getEdgeWeight(some);
-                e = some;
-            }
+    /**
+     * Gives the IslandSolver millis milliseconds (seed=N, epochs=N,
+     * islandcount=N) starting from useTour and the other starts, and
+     * returns its tour if it is cheaper
+     */
+    private int[] runIslands(DistanceMatrix matrix, String[] args, long millis, int[] useTour, List<String> names, List<int[]> starts) {
+        int[] start = useTour;
+        PortfolioSolver.Result result = Metrics.time("islands", () -> {
+            IslandSolver islands = new IslandSolver(matrix, model);
+            islands.setSeed((long) numberArg(args, "seed", 1));
+            islands.setMaxEpochs((int) numberArg(args, "epochs", Integer.MAX_VALUE));
+            int count = (int) numberArg(args, "islandcount", 0);
+            if (count > 0)
+                islands.setIslands(count);
+            islands.addStart(strategy, start);
+            for (int i = 0; i < starts.size(); i++)
+                islands.addStart(names.get(i), starts.get(i));
+            return islands.solve(millis);
+        });
+        if (result.cost < model.tourCost(useTour)) {
+            candidate(strategy, useTour);
+            useTour = result.tour;
+            strategy = result.strategy;
         }
-        return e;
+        if (verbose)
+            log("Islands Path Length - " + getPathLength(matrix, useTour));
+        return useTour;
     }
 
-    public static double getPathLength(Graph<Coordinate, DefaultEdge> duplGraph, List<Coordinate> path) {
-        double pathLength = 0;
-        Coordinate prev = path.get(0);
-        for (int i = 1; i < path.size(); i++) {
-            DefaultEdge edge = graph.getEdge(prev, path.get(i));
-            pathLength += duplGraph.getEdgeWeight(edge);
-            prev = path.get(i);
+    /**
+     * Travel time with the time argument (if the table fits), path length otherwise
+     */
+    private CostModel chooseModel(DistanceMatrix matrix, String[] args) {
+        if (!Arrays.asList(args).contains("time"))
+            return matrix;
+        if (matrix.size() > TravelTimeModel.MAX_POINTS) {
+            log("Too many destinations for the travel time table, using path length");
+            return matrix;
         }
-        return pathLength;
+        return new TravelTimeModel(matrix);
     }
 
+    /* --- HELPERS --- */
     /**
-     * Finds the distance between two Coordinates
+     * Prints a solver progress line unless running quietly
      */
-    public static double distance(Coordinate a, Coordinate b) {
-        return (double) Math.sqrt((double)
-        (Math.pow(a.getX() - b.getX(), 2) +
-        Math.pow(a.getY() - b.getY(), 2))
-        );
+    public static void log(String line) {
+        if (verbose)
+            System.out.println(line);
+    }
+
+    /**
+     * Prints how far a path of the given length can be from the shortest one
+     */
+    private static void logGap(OneTreeBound lower, double length) {
+        if (verbose)
+            log(String.format("Lower Bound - %.2f after %d iterations, gap %.3f%%",
+                lower.getBound(), lower.getIterations(), 100 * lower.gap(length)));
     }
 
     /**
-     * Visualizes the created graph
+     * ASM files named by an asm=a.ASM,b.ASM argument
      */
-    public void visualize() throws InterruptedException {
-        JGraph jgraph = new JGraph(new JGraphModelAdapter(graph));
-        JFrame frame = new JFrame();
-        frame.setSize(400, 400);
-        frame.getContentPane().add(jgraph);
-        frame.setVisible(true);
-        while (true) {
-            Thread.sleep(2000);
+    public static File[] asmTargets(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("asm=")) {
+                String[] names = arg.substring("asm=".length()).split(",");
+                File[] files = new File[names.length];
+                for (int i = 0; i < names.length; i++)
+                    files[i] = new File(names[i]);
+                return files;
+            }
+        }
+        return new File[0];
+    }
+
+    /**
+     * Memory image named by mif=FILE, ASM/coordinate_table.mif for a bare mif, or null
+     */
+    public static File mifArg(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("mif"))
+                return new File(new File("").getAbsoluteFile().getParent() + "/ASM/coordinate_table.mif");
+            if (arg.startsWith("mif="))
+                return new File(arg.substring("mif=".length()));
         }
+        return null;
+    }
+
+    /**
+     * Report file named by a metrics=FILE argument (.csv for CSV, JSON otherwise), or null
+     */
+    public static File metricsReport(String[] args) {
+        for (String arg : args)
+            if (arg.startsWith("metrics="))
+                return new File(arg.substring("metrics=".length()));
+        return null;
+    }
+
+    /**
+     * Reads a name=N argument, e.g. budget=8 or deadline=2000
+     */
+    public static double numberArg(String[] args, String name, double fallback) {
+        for (String arg : args)
+            if (arg.startsWith(name + "="))
+                return Double.parseDouble(arg.substring(name.length() + 1));
+        return fallback;
+    }
+
+    public static double getPathLength(DistanceMatrix matrix, int[] tour) {
+        return matrix.pathLength(tour);
+    }
+
+    /**
+     * Finds the distance between two Coordinates
+     */
+    public static double distance(Coordinate a, Coordinate b) {
+        double dx = a.getX() - b.getX();
+        double dy = a.getY() - b.getY();
+        return Math.sqrt(dx * dx + dy * dy);
     }
 }
@@ -0,0 +1,198 @@
+import java.util.stream.IntStream;
+
+/**
+* Steps a model of the robot through MOVEMENT_LOOP of move_to_points.ASM
+* to predict when it reaches each destination of a tour
+* ROTATE_TO_FACE spins at FSlow/RSlow until THETA is within
+* ROTATE_THRESHOLD of the goal heading, MOVE curves towards the goal at
+* FMidLow and FMidLow + 150 (stopping to rotate again once 80 degrees off)
+* until the L2Estimate drops to 85, and IndicateDest plus the stop and
+* restart cost LEG_OVERHEAD per destination
+* The integer parts (CALC_ERROR's Mod360, FLIP_ANGLE, the raw THETA
+* compare in ROTATE_LOOP, L2Estimate) follow the assembly exactly,
+* including its quirks; Atan2 is rounded Math.atan2
+* Wheel commands are taken as robot units/s on a WHEELBASE wide axle,
+* the same assumptions as TravelTimeModel
+* One instance simulates one tour at a time without allocating
+*/
+public class RunSimulator {
+    /** Simulation step, in seconds */
+    public static final double STEP = 0.01;
+    /** Distance between the wheels, in robot units */
+    public static final double WHEELBASE = 220;
+    /** Give up on a leg after this long, in seconds (the robot would be lost) */
+    public static final double MAX_LEG_TIME = 120;
+
+    private static final int FSLOW = 100;
+    private static final int FMIDLOW = 250;
+    private static final int CURVE = 150;
+    private static final int REROTATE_ERROR = 80;
+    private static final int BACKWARD_ERROR = 90;
+
+    private final int[] xs, ys;
+
+    //robot state
+    private double x, y, theta, time;
+    private int goalX, goalY;
+    private int direction;
+    private int desired;
+    private int error;
+    private double legStart;
+
+    public RunSimulator(DistanceMatrix matrix) {
+        int size = matrix.size();
+        xs = new int[size];
+        ys = new int[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = matrix.point(i).getX();
+            ys[i] = matrix.point(i).getY();
+        }
+    }
+
+    /**
+     * Simulates the tour from the origin facing theta 0 and returns the
+     * total time in seconds; arrival[i] (if not null) gets the time the
+     * robot reaches tour[i], arrival[0] is 0
+     * A leg that takes longer than MAX_LEG_TIME makes the tour infinite
+     */
+    public double simulate(int[] tour, double[] arrival) {
+        x = xs[tour[0]];
+        y = ys[tour[0]];
+        theta = 0;
+        time = 0;
+        if (arrival != null)
+            arrival[0] = 0;
+        for (int i = 1; i < tour.length; i++) {
+            goalX = xs[tour[i]];
+            goalY = ys[tour[i]];
+            legStart = time;
+            rotateToFace();
+            move();
+            if (time - legStart > MAX_LEG_TIME)
+                return Double.POSITIVE_INFINITY;
+            if (arrival != null)
+                arrival[i] = time;
+            time += TravelTimeModel.LEG_OVERHEAD;
+        }
+        return time;
+    }
+
+    /**
+     * Simulated time of every tour, spread over the cores
+     */
+    public static double[] simulateAll(DistanceMatrix matrix, int[][] tours) {
+        double[] times = new double[tours.length];
+        ThreadLocal<RunSimulator> simulators = ThreadLocal.withInitial(() -> new RunSimulator(matrix));
+        IntStream.range(0, tours.length).parallel().forEach(i -> times[i] = simulators.get().simulate(tours[i], null));
+        return times;
+    }
+
+    /**
+     * ROTATE_TO_FACE with ROTATE_THRESHOLD 45 at FSlow/RSlow; sets
+     * direction, desired and error like the assembly does
+     */
+    private void rotateToFace() {
+        direction = 1;
+        desired = atan2(goalX - xpos(), goalY - ypos());
+        error = calcError(desired, thetaReading());
+        boolean left = error >= 0;
+        if (Math.abs(error) >= BACKWARD_ERROR) {
+            left = error < 0;
+            direction = -1;
+            desired = flip(desired);
+        }
+        double spin = left ? FSLOW : -FSLOW;
+        while (Math.abs(thetaReading() - desired) >= TravelTimeModel.ROTATE_THRESHOLD && time - legStart <= MAX_LEG_TIME)
+            step(-spin, spin);
+    }
+
+    /**
+     * MOVE: curve towards the goal until the L2Estimate is within the stop radius
+     */
+    private void move() {
+        do {
+            desired = atan2(goalX - xpos(), goalY - ypos());
+            if (direction < 0)
+                desired = flip(desired);
+            error = calcError(desired, thetaReading());
+            if (Math.abs(error) >= REROTATE_ERROR)
+                rotateToFace();
+            double slow = direction * FMIDLOW, fast = direction * (FMIDLOW + CURVE);
+            boolean right = error < 0;
+            if (direction < 0)
+                right = !right;
+            if (right)
+                step(fast, slow);
+            else
+                step(slow, fast);
+        } while (DistanceKernel.robot(xpos() - goalX, ypos() - goalY) - TravelTimeModel.STOP_RADIUS > 0
+            && time - legStart <= MAX_LEG_TIME);
+    }
+
+    /**
+     * Advances the differential drive by one STEP
+     */
+    private void step(double left, double right) {
+        double speed = (left + right) / 2;
+        double turn = Math.toDegrees((right - left) / WHEELBASE);
+        double heading = Math.toRadians(theta + turn * STEP / 2);
+        x += speed * STEP * Math.cos(heading);
+        y += speed * STEP * Math.sin(heading);
+        theta += turn * STEP;
+        if (theta >= 360)
+            theta -= 360;
+        else if (theta < 0)
+            theta += 360;
+        time += STEP;
+    }
+
+    private int xpos() {
+        return (int) Math.round(x);
+    }
+
+    private int ypos() {
+        return (int) Math.round(y);
+    }
+
+    /**
+     * THETA, whole degrees 0-359
+     */
+    private int thetaReading() {
+        return (int) theta % 360;
+    }
+
+    /**
+     * Whole degrees 0-359 towards (dx, dy), like the Atan2 subroutine
+     */
+    static int atan2(int dx, int dy) {
+        int degrees = (int) Math.round(Math.toDegrees(Math.atan2(dy, dx)));
+        return degrees < 0 ? degrees + 360 : degrees % 360;
+    }
+
+    /**
+     * CALC_ERROR: (desired - actual + 180) Mod360 - 180, where Mod360
+     * returns (0, 360] for non-negative input and [-360, 0) for negative
+     */
+    static int calcError(int desired, int actual) {
+        int a = desired - actual + 180;
+        if (a < 0) {
+            do {
+                a += 360;
+            } while (a < 0);
+            a -= 360;
+        } else {
+            do {
+                a -= 360;
+            } while (a > 0);
+            a += 360;
+        }
+        return a - 180;
+    }
+
+    /**
+     * FLIP_ANGLE
+     */
+    static int flip(int angle) {
+        return angle - 180 < 0 ? angle + 180 : angle - 180;
+    }
+}
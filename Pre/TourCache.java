@@ -0,0 +1,153 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* On-disk cache of solved tours, one file per coordinate set
+* The key hashes the destinations in robot units sorted by position, so
+* the same field hits no matter how the JSON keys are numbered, together
+* with the planning args that change the answer
+* Tours are stored as positions rather than indices and every file carries
+* VERSION, so a solver or cost model change simply turns old files into misses
+* A budget= tour visits only some destinations; each file records how many
+* Least recently used files are deleted once there are more than MAX_ENTRIES
+*/
+public class TourCache {
+    /** Bump whenever a solver change could produce a different tour */
+    public static final String VERSION = "solver-3 time-" + TravelTimeModel.DRIVE_SPEED + "/" + TravelTimeModel.TURN_RATE
+        + "/" + TravelTimeModel.ROTATE_THRESHOLD + "/" + TravelTimeModel.STOP_RADIUS + "/" + TravelTimeModel.LEG_OVERHEAD;
+    public static final int MAX_ENTRIES = 256;
+
+    private final File dir;
+
+    public TourCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the cached tour for this matrix and args, or null on a miss
+     */
+    public int[] get(DistanceMatrix matrix, String[] args) {
+        File file = entry(matrix, args);
+        if (!file.isFile())
+            return null;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!("version=" + VERSION).equals(reader.readLine())) {
+                Files.deleteIfExists(file.toPath());
+                return null;
+            }
+            String strategy = reader.readLine();
+            int visits = Integer.parseInt(reader.readLine().substring("visits=".length()));
+            Map<Long, ArrayDeque<Integer>> byPosition = new HashMap<>();
+            for (int i = 1; i < matrix.size(); i++)
+                byPosition.computeIfAbsent(pack(matrix.point(i)), k -> new ArrayDeque<>()).add(i);
+
+            List<Integer> order = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] xy = line.split(" ");
+                ArrayDeque<Integer> indices = byPosition.get(pack(Integer.parseInt(xy[0]), Integer.parseInt(xy[1])));
+                if (indices == null || indices.isEmpty())
+                    return null;
+                order.add(indices.poll());
+            }
+            if (order.size() != visits)
+                return null;
+            int[] tour = new int[order.size() + 1];
+            for (int i = 0; i < order.size(); i++)
+                tour[i + 1] = order.get(i);
+            file.setLastModified(System.currentTimeMillis());
+            Preprocess.log("Cache hit " + file.getName() + " (" + strategy.substring("strategy=".length()) + ")");
+            return tour;
+        } catch (IOException | RuntimeException e) {
+            Preprocess.log("Ignoring unreadable cache entry " + file.getName() + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a solved tour, then trims the cache to MAX_ENTRIES
+     */
+    public void put(DistanceMatrix matrix, String[] args, int[] tour, String strategy) throws IOException {
+        dir.mkdirs();
+        File file = entry(matrix, args);
+        Path temp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("version=" + VERSION + "\n");
+                writer.write("strategy=" + strategy + "\n");
+                writer.write("visits=" + (tour.length - 1) + "\n");
+                for (int i = 1; i < tour.length; i++)
+                    writer.write(matrix.point(tour[i]).getX() + " " + matrix.point(tour[i]).getY() + "\n");
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    private void evict() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".tour"));
+        if (files == null || files.length <= MAX_ENTRIES)
+            return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_ENTRIES; i++)
+            files[i].delete();
+    }
+
+    /**
+     * File for the canonical fingerprint of the destinations and args
+     */
+    private File entry(DistanceMatrix matrix, String[] args) {
+        int n = matrix.size() - 1;
+        long[][] points = new long[n][];
+        for (int i = 0; i < n; i++) {
+            Coordinate c = matrix.point(i + 1);
+            points[i] = new long[] {c.getX(), c.getY(), Double.doubleToLongBits(c.getScore())};
+        }
+        Arrays.sort(points, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[2], b[2]));
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[24];
+        for (long[] p : points) {
+            for (int k = 0; k < 3; k++)
+                for (int b = 0; b < 8; b++)
+                    buf[k * 8 + b] = (byte) (p[k] >>> (56 - 8 * b));
+            digest.update(buf);
+        }
+        String[] planArgs = Arrays.stream(args).filter(a -> !a.startsWith("asm=") && !a.startsWith("metrics=") && !a.equals("nocache") && !a.equals("quiet") && !a.equals("precompute") && !a.equals("mif") && !a.startsWith("mif=")).sorted().toArray(String[]::new);
+        digest.update(String.join(" ", planArgs).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest())
+            name.append(String.format("%02x", b));
+        return new File(dir, name + ".tour");
+    }
+
+    private static long pack(Coordinate c) {
+        return pack(c.getX(), c.getY());
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
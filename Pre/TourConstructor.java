@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Builds a first tour (an int[] permutation starting at the origin)
+* for LocalSearch and the other solvers to improve
+* construct=a,b,... on the command line picks which ones a plan runs;
+* every tour they build is a candidate and the cheapest one is kept
+*/
+public interface TourConstructor {
+    /** Names construct= accepts, in the order construct=all runs them */
+    String[] NAMES = {"nn", "magic", "nearest", "farthest", "cheapest", "hull"};
+
+    /**
+     * A tour over every point of the matrix
+     */
+    int[] construct(DistanceMatrix matrix);
+
+    /**
+     * Name on the command line
+     */
+    String key();
+
+    /**
+     * Name of the metrics phase that times it
+     */
+    default String phase() {
+        return key();
+    }
+
+    /**
+     * Name logged and reported as the strategy
+     */
+    String name();
+
+    /**
+     * The constructor construct= calls key
+     */
+    static TourConstructor named(String key) {
+        switch (key) {
+            case "nn":
+                return new NearestNeighborConstructor();
+            case "magic":
+                return new MagicConstructor();
+            case "nearest":
+                return new InsertionConstructor(InsertionConstructor.Rule.NEAREST);
+            case "farthest":
+                return new InsertionConstructor(InsertionConstructor.Rule.FARTHEST);
+            case "cheapest":
+                return new InsertionConstructor(InsertionConstructor.Rule.CHEAPEST);
+            case "hull":
+                return new InsertionConstructor(InsertionConstructor.Rule.HULL);
+            default:
+                throw new IllegalArgumentException("Unknown constructor " + key + ", expected all or any of " + String.join(",", NAMES));
+        }
+    }
+
+    /**
+     * Constructors named by a construct=a,b,... argument, all of them without one
+     */
+    static List<TourConstructor> constructArg(String[] args) {
+        String[] keys = NAMES;
+        for (String arg : args)
+            if (arg.startsWith("construct=") && !arg.equals("construct=all"))
+                keys = arg.substring("construct=".length()).split(",");
+        List<TourConstructor> constructors = new ArrayList<>();
+        for (String key : keys)
+            constructors.add(named(key));
+        return constructors;
+    }
+}
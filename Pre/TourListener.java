@@ -0,0 +1,11 @@
+/**
+* Receives each improved tour from an anytime solver as soon as it is found
+* Calls can come from worker threads but never overlap, and every call
+* carries a lower cost than the one before
+*/
+public interface TourListener {
+    /**
+     * elapsedMillis counts from the start of the solve; the tour must not be modified
+     */
+    void improved(int[] tour, double cost, long elapsedMillis, String strategy);
+}
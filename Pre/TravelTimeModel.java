@@ -0,0 +1,91 @@
+/**
+* Estimates how long the robot takes to drive a tour, following
+* MOVEMENT_LOOP in move_to_points.ASM: ROTATE_TO_FACE at FSlow/RSlow
+* until within ROTATE_THRESHOLD, then MOVE until within its stop radius
+* The costs are precomputed into a (previous, current, next) table
+*/
+public class TravelTimeModel implements CostModel {
+    /** Largest point count (origin included) the cubic table is built for */
+    public static final int MAX_POINTS = 128;
+
+    /** MOVE drives at FMidLow (250) on one wheel and 400 on the other, in robot units/s */
+    public static final double DRIVE_SPEED = 325;
+    /** In-place spin rate at FSlow/RSlow (+-100) on a ~220 robot unit wheelbase, in degrees/s */
+    public static final double TURN_RATE = 52;
+    /** ROTATE_THRESHOLD set by MOVEMENT_LOOP; the rest of the turn is corrected while driving */
+    public static final int ROTATE_THRESHOLD = 45;
+    /** MOVE stops once the L2 estimate drops below this */
+    public static final int STOP_RADIUS = 85;
+    /** Stopping, starting and IndicateDest per destination, in seconds */
+    public static final double LEG_OVERHEAD = 0.5;
+
+    private final int size;
+    private final double[] cost;
+
+    public TravelTimeModel(DistanceMatrix matrix) {
+        size = matrix.size();
+        if (size > MAX_POINTS)
+            throw new IllegalArgumentException("Travel time table supports at most " + MAX_POINTS + " points, got " + size);
+        double[] heading = new double[size * size];
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                heading[i * size + j] = heading(matrix.point(i), matrix.point(j));
+
+        //cost[(prev * size + cur) * size + next], prev == cur means the robot
+        //is still at its starting pose facing theta 0
+        cost = new double[size * size * size];
+        for (int prev = 0; prev < size; prev++) {
+            for (int cur = 0; cur < size; cur++) {
+                double facing = prev == cur ? 0 : heading[prev * size + cur];
+                int base = (prev * size + cur) * size;
+                for (int next = 0; next < size; next++) {
+                    if (next == cur)
+                        continue;
+                    cost[base + next] = turnTime(facing, heading[cur * size + next]) + driveTime(matrix.get(cur, next));
+                }
+            }
+        }
+    }
+
+    /**
+     * Time to turn at cur (having arrived from prev) and drive to next
+     */
+    public double legCost(int prev, int cur, int next) {
+        return cost[(prev * size + cur) * size + next];
+    }
+
+    public double tourCost(int[] tour) {
+        if (tour.length < 2)
+            return 0;
+        double time = cost[(tour[0] * size + tour[0]) * size + tour[1]];
+        for (int i = 2; i < tour.length; i++)
+            time += cost[(tour[i - 2] * size + tour[i - 1]) * size + tour[i]];
+        return time;
+    }
+
+    public String unit() {
+        return "s";
+    }
+
+    /**
+     * Seconds spent spinning in place; ROTATE_TO_FACE reverses instead
+     * of turning past 90 degrees and stops ROTATE_THRESHOLD short
+     */
+    public static double turnTime(double facing, double desired) {
+        double error = Math.abs(((desired - facing) % 360 + 540) % 360 - 180);
+        error = Math.min(error, 180 - error);
+        return Math.max(0, error - ROTATE_THRESHOLD) / TURN_RATE;
+    }
+
+    public static double driveTime(double distance) {
+        return LEG_OVERHEAD + Math.max(0, distance - STOP_RADIUS) / DRIVE_SPEED;
+    }
+
+    /**
+     * Heading from a to b in degrees [0, 360), 0 along +x like THETA
+     */
+    public static double heading(Coordinate a, Coordinate b) {
+        double degrees = Math.toDegrees(Math.atan2(b.getY() - a.getY(), b.getX() - a.getX()));
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+}
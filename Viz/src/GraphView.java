@@ -0,0 +1,106 @@
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+
+import org.jgraph.JGraph;
+import org.jgraph.graph.AttributeMap;
+import org.jgraph.graph.DefaultGraphCell;
+import org.jgraph.graph.GraphConstants;
+import org.jgrapht.Graph;
+import org.jgrapht.ext.JGraphModelAdapter;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+/**
+* Optional viewer for the planner, kept out of Pre so the core build
+* needs neither JGraphT nor Swing on its classpath
+* Shows the destinations at their positions joined by the planned tour,
+* or by every pairwise edge with the complete argument
+*/
+public class GraphView {
+    /** Drawing area in pixels */
+    private static final int SIZE = 600;
+    private static final int MARGIN = 40;
+
+    /**
+     * The complete graph over the origin and the Coordinates, weighted by distance
+     */
+    public static Graph<Coordinate, DefaultWeightedEdge> createGraph(Coordinate origin, Coordinate[] coords) {
+        SimpleWeightedGraph<Coordinate, DefaultWeightedEdge> graph = new SimpleWeightedGraph<>(DefaultWeightedEdge.class);
+        graph.addVertex(origin);
+        for (Coordinate c : coords)
+            graph.addVertex(c);
+        for (int i = 0; i < coords.length; i++) {
+            graph.setEdgeWeight(graph.addEdge(coords[i], origin), Preprocess.distance(coords[i], origin));
+            for (int j = i + 1; j < coords.length; j++)
+                graph.setEdgeWeight(graph.addEdge(coords[i], coords[j]), Preprocess.distance(coords[i], coords[j]));
+        }
+        return graph;
+    }
+
+    /**
+     * The points of a matrix joined in tour order, weighted by the matrix
+     */
+    public static Graph<Coordinate, DefaultWeightedEdge> tourGraph(DistanceMatrix matrix, int[] tour) {
+        SimpleWeightedGraph<Coordinate, DefaultWeightedEdge> graph = new SimpleWeightedGraph<>(DefaultWeightedEdge.class);
+        for (int i = 0; i < matrix.size(); i++)
+            graph.addVertex(matrix.point(i));
+        for (int i = 1; i < tour.length; i++)
+            graph.setEdgeWeight(graph.addEdge(matrix.point(tour[i - 1]), matrix.point(tour[i])), matrix.get(tour[i - 1], tour[i]));
+        return graph;
+    }
+
+    /**
+     * Opens a window with the graph, each vertex drawn at its coordinates
+     */
+    public static void show(Graph<Coordinate, DefaultWeightedEdge> graph, String title) {
+        JGraphModelAdapter<Coordinate, DefaultWeightedEdge> adapter = new JGraphModelAdapter<>(graph);
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (Coordinate c : graph.vertexSet()) {
+            minX = Math.min(minX, c.getX());
+            maxX = Math.max(maxX, c.getX());
+            minY = Math.min(minY, c.getY());
+            maxY = Math.max(maxY, c.getY());
+        }
+        double scale = (double) SIZE / Math.max(1, Math.max(maxX - minX, maxY - minY));
+        Map<Object, Object> moved = new HashMap<>();
+        for (Coordinate c : graph.vertexSet()) {
+            DefaultGraphCell cell = adapter.getVertexCell(c);
+            AttributeMap attributes = cell.getAttributes();
+            Rectangle2D bounds = GraphConstants.getBounds(attributes);
+            //y grows downwards on screen
+            GraphConstants.setBounds(attributes, new Rectangle2D.Double(MARGIN + (c.getX() - minX) * scale,
+                MARGIN + (maxY - c.getY()) * scale, bounds.getWidth(), bounds.getHeight()));
+            moved.put(cell, attributes);
+        }
+        adapter.edit(moved, null, null, null);
+
+        JFrame frame = new JFrame(title);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.getContentPane().add(new JScrollPane(new JGraph(adapter)));
+        frame.setSize(SIZE + 3 * MARGIN + 100, SIZE + 3 * MARGIN);
+        frame.setVisible(true);
+    }
+
+    /**
+     * GraphView FILE [complete] [planning args...]: plans the destinations in
+     * FILE (any format CoordinateLoader reads) and shows the tour
+     */
+    public static void main(String[] args) throws Exception {
+        Coordinate[] coords = CoordinateLoader.load(new File(args[0]));
+        String[] planArgs = Arrays.copyOfRange(args, 1, args.length);
+        Preprocess p = new Preprocess();
+        if (Arrays.asList(planArgs).contains("complete")) {
+            show(createGraph(p.origin, coords), args[0] + " - all legs");
+            return;
+        }
+        DistanceMatrix matrix = new DistanceMatrix(p.origin, coords, DistanceKernel.metricArg(planArgs));
+        int[] tour = p.plan(matrix, planArgs);
+        show(tourGraph(matrix, tour), args[0] + " - " + p.strategy + ", " + Math.round(matrix.pathLength(tour)));
+    }
+}